@@ -0,0 +1,81 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reader for the block-framed format written by BlockWriter. Only one block is held in memory at a time.
+ */
+public class BlockReader implements Closeable {
+    private final DataInputStream inStream;
+
+    /**
+     * Constructor for BlockReader
+     * @param inputStream Source of the compressed stream
+     * @throws IOException
+     */
+    public BlockReader(InputStream inputStream) throws IOException {
+        this.inStream = new DataInputStream(new BufferedInputStream(new ZstdInputStream(inputStream)));
+    }
+
+    /**
+     * Constructor for BlockReader
+     * @param channel Source of the compressed stream
+     * @throws IOException
+     */
+    public BlockReader(ReadableByteChannel channel) throws IOException {
+        this(Channels.newInputStream(channel));
+    }
+
+    /**
+     * Decompress the next block
+     * @return Time-series data of the block, or null at the end of the stream
+     * @throws IOException
+     */
+    public List<Point> readBlock() throws IOException {
+        int codecId = inStream.read();
+        if (codecId < 0) return null;
+        Codec codec = Codec.fromId(codecId);
+        byte[] payload = new byte[inStream.readInt()];
+        inStream.readFully(payload);
+
+        return codec.decompress(new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * Close the underlying input stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        inStream.close();
+    }
+
+    /**
+     * Decompress a block-framed stream, passing the points of each block to a consumer
+     * @param inputStream Source of the compressed stream
+     * @param consumer Receiver of each decompressed block
+     * @throws IOException
+     */
+    public static void decompress(InputStream inputStream, Consumer<List<Point>> consumer) throws IOException {
+        try (BlockReader reader = new BlockReader(inputStream)) {
+            List<Point> points;
+            while ((points = reader.readBlock()) != null) consumer.accept(points);
+        }
+    }
+
+    /**
+     * Decompress a block-framed stream, passing the points of each block to a consumer
+     * @param channel Source of the compressed stream
+     * @param consumer Receiver of each decompressed block
+     * @throws IOException
+     */
+    public static void decompress(ReadableByteChannel channel, Consumer<List<Point>> consumer) throws IOException {
+        decompress(Channels.newInputStream(channel), consumer);
+    }
+}
@@ -0,0 +1,180 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writer for the block-framed format: a single Zstd stream of independently decodable blocks,
+ * each holding the codec id, the payload length and the merged segment groups of its points
+ */
+public class BlockWriter implements Closeable {
+    private final DataOutputStream outStream;
+    private final Codec codec;
+    private final CodecSelector selector;
+    private final ZstdCompressCtx context;
+    private final double error;
+    private final ErrorStats stats;
+
+    /**
+     * Constructor for BlockWriter
+     * @param outputStream Destination of the compressed stream
+     * @param codec Algorithm used for every block
+     * @param error Maximum absolute error
+     * @throws IOException
+     */
+    public BlockWriter(OutputStream outputStream, Codec codec, double error) throws IOException {
+        this(outputStream, codec, error, null);
+    }
+
+    /**
+     * Constructor for BlockWriter in verify mode, checking the points of every block as compress does
+     * @param outputStream Destination of the compressed stream
+     * @param codec Algorithm used for every block
+     * @param error Maximum absolute error
+     * @param stats Accumulator of the errors of all blocks, or null to skip verification
+     * @throws IOException
+     */
+    public BlockWriter(OutputStream outputStream, Codec codec, double error, ErrorStats stats) throws IOException {
+        this(outputStream, codec, null, error, stats);
+    }
+
+    /**
+     * Constructor for BlockWriter choosing the codec of every block
+     * @param outputStream Destination of the compressed stream
+     * @param selector Chooser of the codec of each block
+     * @param error Maximum absolute error
+     * @throws IOException
+     */
+    public BlockWriter(OutputStream outputStream, CodecSelector selector, double error) throws IOException {
+        this(outputStream, selector, error, null);
+    }
+
+    /**
+     * Constructor for BlockWriter choosing the codec of every block, in verify mode
+     * @param outputStream Destination of the compressed stream
+     * @param selector Chooser of the codec of each block
+     * @param error Maximum absolute error
+     * @param stats Accumulator of the errors of all blocks, or null to skip verification
+     * @throws IOException
+     */
+    public BlockWriter(OutputStream outputStream, CodecSelector selector, double error, ErrorStats stats) throws IOException {
+        this(outputStream, null, selector, error, stats);
+    }
+
+    private BlockWriter(OutputStream outputStream, Codec codec, CodecSelector selector, double error, ErrorStats stats) throws IOException {
+        if (error <= 0) throw new IllegalArgumentException("Error must be positive");
+        this.outStream = new DataOutputStream(new ZstdOutputStream(outputStream));
+        this.codec = codec;
+        this.selector = selector;
+        this.context = selector != null ? CodecSelector.newContext() : null;
+        this.error = error;
+        this.stats = stats;
+    }
+
+    /**
+     * Compress a list of Points as one block
+     * @param points Time-series data, later than every point of the previous blocks
+     * @throws Exception
+     */
+    public void write(List<Point> points) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        write(columns.getTimestamps(), columns.getValues(), 0, columns.size());
+    }
+
+    /**
+     * Compress a range of time-series columns as one block, without allocating per point
+     * @param timestamps Timestamps, later than every point of the previous blocks
+     * @param values Values, aligned with timestamps
+     * @param from First index of the block (inclusive)
+     * @param to Last index of the block (exclusive)
+     * @throws Exception
+     */
+    public void write(long[] timestamps, double[] values, int from, int to) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Codec blockCodec = codec != null ? codec : selector.select(timestamps, values, from, to, error, context, payload);
+        if (payload.size() == 0) blockCodec.compress(timestamps, values, from, to, error, payload);
+        if (stats != null) blockCodec.verify(payload.toByteArray(), timestamps, values, from, to, error, stats);
+        writeBlock(blockCodec, payload);
+    }
+
+    private void writeBlock(Codec blockCodec, ByteArrayOutputStream payload) throws IOException {
+        outStream.writeByte(blockCodec.getId());
+        outStream.writeInt(payload.size());
+        payload.writeTo(outStream);
+    }
+
+    /**
+     * Finish the Zstd stream and close the underlying output stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            outStream.close();
+        } finally {
+            if (context != null) context.close();
+        }
+    }
+
+    /**
+     * Compress a list of Points into the block-framed format
+     * @param points Time-series data
+     * @param error Maximum absolute error
+     * @param codec Algorithm used for every block
+     * @param blockSize Number of points per block
+     * @param outputStream Destination of the compressed stream
+     * @throws Exception
+     */
+    public static void compress(List<Point> points, double error, Codec codec, int blockSize, OutputStream outputStream) throws Exception {
+        if (blockSize <= 0) throw new IllegalArgumentException("Block size must be positive");
+        try (BlockWriter writer = new BlockWriter(outputStream, codec, error)) {
+            for (int start = 0; start < points.size(); start += blockSize)
+                writer.write(points.subList(start, Math.min(points.size(), start + blockSize)));
+        }
+    }
+
+    /**
+     * Compress time-series columns into the block-framed format, without allocating per point
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @param codec Algorithm used for every block
+     * @param blockSize Number of points per block
+     * @param outputStream Destination of the compressed stream
+     * @throws Exception
+     */
+    public static void compress(long[] timestamps, double[] values, double error, Codec codec, int blockSize, OutputStream outputStream) throws Exception {
+        if (blockSize <= 0) throw new IllegalArgumentException("Block size must be positive");
+        try (BlockWriter writer = new BlockWriter(outputStream, codec, error)) {
+            for (int start = 0; start < timestamps.length; start += blockSize)
+                writer.write(timestamps, values, start, Math.min(timestamps.length, start + blockSize));
+        }
+    }
+
+    /**
+     * Compress time-series columns into the block-framed format, choosing the codec of each block
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @param selector Chooser of the codec of each block
+     * @param blockSize Number of points per block
+     * @param outputStream Destination of the compressed stream
+     * @throws Exception
+     */
+    public static void compress(long[] timestamps, double[] values, double error, CodecSelector selector, int blockSize, OutputStream outputStream) throws Exception {
+        if (blockSize <= 0) throw new IllegalArgumentException("Block size must be positive");
+        try (BlockWriter writer = new BlockWriter(outputStream, selector, error)) {
+            for (int start = 0; start < timestamps.length; start += blockSize)
+                writer.write(timestamps, values, start, Math.min(timestamps.length, start + blockSize));
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.xkitsios;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Command-line batch compressor. Files of "timestamp,value" lines (optionally gzipped) are processed concurrently
+ * and a line of throughput, compression ratio and observed error is printed per file. Throughput only covers the
+ * codec, not file parsing, writing or the error check, which decodes the output in a separate pass afterwards. Sizes
+ * count 8 bytes per point as TestPLA does. Directories expand to the files the command reads: compressed files for
+ * decompress and the others for compress and stats.
+ */
+public class Cli {
+    static final String EXTENSION = ".pla";
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: Cli <compress|decompress|stats> [options] <file or directory>...",
+            "  compress    Write <file>" + EXTENSION + " in the block-framed format",
+            "  decompress  Write <file>.csv from a block-framed file",
+            "  stats       Compress and decompress in memory without writing files",
+            "Options:",
+            "  --error <value>       Maximum absolute error",
+            "  --error-pct <value>   Maximum absolute error as a percentage of the range of each file",
+            "  --codec <name>        sim-piece, mix-piece, quantized-delta or adaptive to choose per block (default mix-piece)",
+            "  --threads <n>         Number of files processed concurrently (default number of processors)",
+            "  --block-size <n>      Number of points per block (default 1048576)",
+            "  --delimiter <char>    Delimiter of input lines (default ,)");
+
+    private static class Options {
+        private String command;
+        private double error = Double.NaN;
+        private double errorPct = Double.NaN;
+        private Codec codec = Codec.MIX_PIECE;
+        private CodecSelector selector;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int blockSize = 1 << 20;
+        private char delimiter = ',';
+        private final List<Path> files = new ArrayList<>();
+
+        private Options(String[] args) throws IOException {
+            if (args.length == 0) throw new IllegalArgumentException("Missing command");
+            command = args[0];
+            if (!command.equals("compress") && !command.equals("decompress") && !command.equals("stats"))
+                throw new IllegalArgumentException("Unknown command " + command);
+
+            for (int i = 1; i < args.length; i++) {
+                if (!args[i].startsWith("--")) {
+                    addFiles(Paths.get(args[i]));
+                    continue;
+                }
+                if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + args[i]);
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--error":
+                        error = Double.parseDouble(value);
+                        break;
+                    case "--error-pct":
+                        errorPct = Double.parseDouble(value);
+                        break;
+                    case "--codec":
+                        if (value.equals("adaptive")) selector = new CodecSelector();
+                        else codec = Codec.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--block-size":
+                        blockSize = Integer.parseInt(value);
+                        break;
+                    case "--delimiter":
+                        if (value.length() != 1) throw new IllegalArgumentException("Delimiter must be one character");
+                        delimiter = value.charAt(0);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+                }
+            }
+
+            if (files.isEmpty()) throw new IllegalArgumentException("Missing input files");
+            if (threads <= 0 || blockSize <= 0) throw new IllegalArgumentException("Threads and block size must be positive");
+            if (!command.equals("decompress") && Double.isNaN(error) == Double.isNaN(errorPct))
+                throw new IllegalArgumentException("Exactly one of --error and --error-pct is required");
+            if (error <= 0 || errorPct <= 0) throw new IllegalArgumentException("Error must be positive");
+        }
+
+        private void addFiles(Path path) throws IOException {
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                return;
+            }
+            try (Stream<Path> paths = Files.list(path)) {
+                files.addAll(paths.filter(Files::isRegularFile).filter(this::isInput).sorted().collect(Collectors.toList()));
+            }
+        }
+
+        // Whether a file of a directory is read by the command, so outputs of earlier runs are skipped
+        private boolean isInput(Path path) {
+            String name = path.getFileName().toString();
+            if (command.equals("decompress")) return name.endsWith(EXTENSION);
+            return !name.endsWith(EXTENSION) && !name.endsWith(EXTENSION + ".csv");
+        }
+
+        private double error(double range) {
+            return Double.isNaN(error) ? range * errorPct / 100 : error;
+        }
+
+        private String codecName() {
+            return selector != null ? "ADAPTIVE" : codec.name();
+        }
+    }
+
+    /**
+     * Run a command and exit with 0 on success, 1 if a file failed and 2 on invalid arguments
+     * @param args Command, options and input files or directories
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = new Options(args);
+        } catch (IllegalArgumentException | IOException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+        List<Future<String>> reports = new ArrayList<>();
+        for (Path file : options.files) reports.add(executor.submit(() -> process(file, options)));
+
+        int status = 0;
+        for (int i = 0; i < reports.size(); i++) {
+            try {
+                out.println(reports.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = 1;
+                break;
+            } catch (ExecutionException e) {
+                err.println(options.files.get(i) + ": " + e.getCause());
+                status = 1;
+            }
+        }
+        executor.shutdownNow();
+
+        return status;
+    }
+
+    private static String process(Path file, Options options) throws Exception {
+        switch (options.command) {
+            case "compress":
+                return compress(file, options);
+            case "decompress":
+                return decompress(file);
+            default:
+                return stats(file, options);
+        }
+    }
+
+    private static String compress(Path file, Options options) throws Exception {
+        TimeSeriesColumns columns = ColumnReader.readCsv(file, options.delimiter);
+        double error = options.error(columns.getRange());
+
+        long start = System.nanoTime();
+        byte[] binary = compress(columns, error, options);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Files.write(Paths.get(file + EXTENSION), binary);
+        ErrorStats errorStats = errors(decompress(binary), columns, error);
+
+        return String.format(Locale.ROOT, "%s\tcompress\t%s\tpoints: %d\tpoints/s: %.0f\tMB/s: %.2f\tratio: %.3f\t%s",
+                file, options.codecName(), columns.size(), columns.size() / seconds, mb(columns.size()) / seconds,
+                ratio(columns.size(), binary.length), format(errorStats, error));
+    }
+
+    private static String decompress(Path file) throws IOException {
+        byte[] binary = Files.readAllBytes(file);
+
+        long start = System.nanoTime();
+        List<Point> points = decompress(binary);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        try (Writer writer = Files.newBufferedWriter(Paths.get(file + ".csv"), StandardCharsets.UTF_8)) {
+            for (Point point : points) writer.write(point.getTimestamp() + "," + point.getValue() + "\n");
+        }
+
+        return String.format(Locale.ROOT, "%s\tdecompress\tpoints: %d\tpoints/s: %.0f\tMB/s: %.2f\tratio: %.3f",
+                file, points.size(), points.size() / seconds, mb(points.size()) / seconds, ratio(points.size(), binary.length));
+    }
+
+    private static String stats(Path file, Options options) throws Exception {
+        TimeSeriesColumns columns = ColumnReader.readCsv(file, options.delimiter);
+        double error = options.error(columns.getRange());
+
+        long start = System.nanoTime();
+        byte[] binary = compress(columns, error, options);
+        double compressSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        List<Point> decompressed = decompress(binary);
+        double decompressSeconds = (System.nanoTime() - start) / 1e9;
+
+        ErrorStats errorStats = errors(decompressed, columns, error);
+
+        return String.format(Locale.ROOT, "%s\tstats\t%s\tpoints: %d\tcompress points/s: %.0f\tcompress MB/s: %.2f\tdecompress points/s: %.0f\tdecompress MB/s: %.2f\tratio: %.3f\t%s",
+                file, options.codecName(), columns.size(), columns.size() / compressSeconds, mb(columns.size()) / compressSeconds,
+                decompressed.size() / decompressSeconds, mb(decompressed.size()) / decompressSeconds,
+                ratio(columns.size(), binary.length), format(errorStats, error));
+    }
+
+    private static List<Point> decompress(byte[] binary) throws IOException {
+        List<Point> points = new ArrayList<>();
+        BlockReader.decompress(new ByteArrayInputStream(binary), points::addAll);
+
+        return points;
+    }
+
+    private static byte[] compress(TimeSeriesColumns columns, double error, Options options) throws Exception {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        try (BlockWriter writer = options.selector != null
+                ? new BlockWriter(outStream, options.selector, error)
+                : new BlockWriter(outStream, options.codec, error)) {
+            for (int from = 0; from < columns.size(); from += options.blockSize)
+                writer.write(columns.getTimestamps(), columns.getValues(), from, Math.min(columns.size(), from + options.blockSize));
+        }
+
+        return outStream.toByteArray();
+    }
+
+    // Error of each original point against the decoded point with its timestamp, both sorted by timestamp
+    private static ErrorStats errors(List<Point> decompressed, TimeSeriesColumns columns, double error) throws ErrorBoundException {
+        ErrorStats errorStats = new ErrorStats();
+        int k = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            long timestamp = columns.getTimestamps()[i];
+            while (k < decompressed.size() && decompressed.get(k).getTimestamp() < timestamp) k++;
+            if (k == decompressed.size() || decompressed.get(k).getTimestamp() != timestamp)
+                throw new IllegalStateException("Missing timestamp " + timestamp + " in decompressed data");
+            errorStats.accept(timestamp, Math.abs(decompressed.get(k).getValue() - columns.getValues()[i]), error);
+        }
+
+        return errorStats;
+    }
+
+    private static String format(ErrorStats errorStats, double error) {
+        return String.format(Locale.ROOT, "max error: %.6g (%.6g)\tmean error: %.6g\tabove bound: %d",
+                errorStats.getMaxError(), error, errorStats.getMeanError(), errorStats.getNumViolations());
+    }
+
+    private static double mb(long numPoints) {
+        return numPoints * 8.0 / (1 << 20);
+    }
+
+    private static double ratio(long numPoints, long numBytes) {
+        return numPoints * 8.0 / numBytes;
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.xkitsios;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Compression algorithms that can be recorded in a block-framed stream. Each one is recorded by a fixed id, so that
+ * constants can be added or reordered without changing the meaning of existing streams.
+ */
+public enum Codec {
+    /**
+     * Sim-Piece
+     */
+    SIM_PIECE(0),
+    /**
+     * Mix-Piece
+     */
+    MIX_PIECE(1),
+    /**
+     * Quantized values and timestamps as bit-packed deltas, for blocks that segments do not compress
+     */
+    QUANTIZED_DELTA(2);
+
+    private final int id;
+
+    Codec(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Getter for id
+     * @return Id recorded in a block-framed stream
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Codec recorded with an id
+     * @param id Id recorded in a block-framed stream
+     * @return Codec
+     * @throws IOException If no codec has the id
+     */
+    public static Codec fromId(int id) throws IOException {
+        for (Codec codec : values())
+            if (codec.id == id) return codec;
+        throw new IOException("Unknown codec " + id);
+    }
+
+    void compress(long[] timestamps, double[] values, int from, int to, double error, ByteArrayOutputStream outStream) throws Exception {
+        switch (this) {
+            case SIM_PIECE:
+                SimPiece.compress(timestamps, values, from, to, error, outStream);
+                break;
+            case MIX_PIECE:
+                MixPiece.compress(timestamps, values, from, to, error, outStream);
+                break;
+            case QUANTIZED_DELTA:
+                QuantizedDelta.compress(timestamps, values, from, to, error, outStream);
+                break;
+        }
+    }
+
+    void verify(byte[] body, long[] timestamps, double[] values, int from, int to, double error, ErrorStats stats) throws IOException, ErrorBoundException {
+        switch (this) {
+            case SIM_PIECE:
+                SimPiece.verify(body, timestamps, values, from, to, error, stats);
+                break;
+            case MIX_PIECE:
+                MixPiece.verify(body, timestamps, values, from, to, error, stats);
+                break;
+            case QUANTIZED_DELTA:
+                QuantizedDelta.verify(body, timestamps, values, from, to, error, stats);
+                break;
+        }
+    }
+
+    List<Point> decompress(ByteArrayInputStream inStream) throws IOException {
+        switch (this) {
+            case SIM_PIECE:
+                return SimPiece.decompress(inStream);
+            case MIX_PIECE:
+                return MixPiece.decompress(inStream);
+            case QUANTIZED_DELTA:
+                return QuantizedDelta.decompress(inStream);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    SegmentTable readSegmentTable(byte[] binary) throws IOException {
+        switch (this) {
+            case SIM_PIECE:
+                return SimPiece.readSegmentTable(binary);
+            case MIX_PIECE:
+                return MixPiece.readSegmentTable(binary);
+            case QUANTIZED_DELTA:
+                return QuantizedDelta.readSegmentTable(binary);
+            default:
+                throw new IllegalStateException();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Per-block choice of codec for BlockWriter from a cheap estimate: a few evenly spaced windows of each block are
+ * compressed with every codec and Zstd. From the cheapest to the most expensive in CPU time, the codecs are
+ * Quantized-Delta, Sim-Piece and Mix-Piece, and a more expensive one is only chosen if its estimated size is smaller
+ * than that of the current choice by more than a minimum gain. Sampling a codec stops as soon as its windows so far
+ * rule it out. A selector holds no state, so one can be shared by writers on several threads; each BlockWriter
+ * reuses its own Zstd context for every block.
+ */
+public class CodecSelector {
+    private static final Codec[] CODECS_BY_COST = {Codec.QUANTIZED_DELTA, Codec.SIM_PIECE, Codec.MIX_PIECE};
+    private static final int NUM_WINDOWS = 4;
+
+    private final int samplePoints;
+    private final double minGain;
+
+    /**
+     * Constructor for CodecSelector that samples 4096 points per block and requires a gain of 5%
+     */
+    public CodecSelector() {
+        this(1 << 12, 0.05);
+    }
+
+    /**
+     * Constructor for CodecSelector
+     * @param samplePoints Number of points of a block compressed with each codec, in 4 windows. Blocks of at most
+     *                     as many points are compressed whole, and the payload of the chosen codec is reused.
+     * @param minGain Fraction of the estimated size a more expensive codec must save, in [0, 1)
+     */
+    public CodecSelector(int samplePoints, double minGain) {
+        if (samplePoints < NUM_WINDOWS) throw new IllegalArgumentException("Sample must have at least " + NUM_WINDOWS + " points");
+        if (!(minGain >= 0 && minGain < 1)) throw new IllegalArgumentException("Minimum gain must be in [0, 1)");
+        this.samplePoints = samplePoints;
+        this.minGain = minGain;
+    }
+
+    /**
+     * Choose the codec of a block, with a Zstd context created for this call
+     * @param timestamps Timestamps
+     * @param values Values, aligned with timestamps
+     * @param from First index of the block (inclusive)
+     * @param to Last index of the block (exclusive)
+     * @param error Maximum absolute error
+     * @return Chosen codec
+     * @throws Exception
+     */
+    public Codec select(long[] timestamps, double[] values, int from, int to, double error) throws Exception {
+        try (ZstdCompressCtx context = newContext()) {
+            return select(timestamps, values, from, to, error, context, null);
+        }
+    }
+
+    // context is reused across blocks, as creating one costs more than compressing a small sample
+    static ZstdCompressCtx newContext() {
+        ZstdCompressCtx context = new ZstdCompressCtx();
+        context.setLevel(Zstd.defaultCompressionLevel());
+        return context;
+    }
+
+    // Like select, also writing the payload of the chosen codec to payload if the sample is the whole block
+    Codec select(long[] timestamps, double[] values, int from, int to, double error, ZstdCompressCtx context, ByteArrayOutputStream payload) throws Exception {
+        if (from >= to) throw new IllegalArgumentException("Empty block");
+        int numWindows = to - from <= samplePoints ? 1 : NUM_WINDOWS;
+        int window = numWindows == 1 ? to - from : samplePoints / NUM_WINDOWS;
+
+        Codec choice = null;
+        long choiceSize = 0;
+        ByteArrayOutputStream choicePayload = null;
+        for (Codec codec : CODECS_BY_COST) {
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            long size = 0;
+            for (int k = 0; k < numWindows && (choice == null || size < choiceSize * (1 - minGain)); k++) {
+                int start = numWindows == 1 ? from : from + (int) ((long) (to - from - window) * k / (numWindows - 1));
+                outStream.reset();
+                codec.compress(timestamps, values, start, start + window, error, outStream);
+                size += context.compress(outStream.toByteArray()).length;
+            }
+            if (choice == null || size < choiceSize * (1 - minGain)) {
+                choice = codec;
+                choiceSize = size;
+                choicePayload = outStream;
+            }
+        }
+        if (payload != null && numWindows == 1) choicePayload.writeTo(payload);
+
+        return choice;
+    }
+}
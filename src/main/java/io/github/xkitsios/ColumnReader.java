@@ -0,0 +1,295 @@
+package io.github.xkitsios;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Readers of time-series data straight into primitive columns, computing the minimum and maximum value in the
+ * same pass. Delimited text is parsed from a byte buffer without creating a String or a Point per line.
+ */
+public class ColumnReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAPPED_CHUNK = 1 << 27;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private long[] timestamps = new long[1024];
+    private double[] values = new double[1024];
+    private int size;
+    private double min = Double.MAX_VALUE;
+    private double max = -Double.MAX_VALUE;
+    private long lineNumber;
+
+    private ColumnReader() {
+    }
+
+    /**
+     * Read a file of "timestamp[delimiter]value" lines, gzipped if its name ends with .gz. Further fields are ignored.
+     * @param file Source file
+     * @param delimiter Field delimiter
+     * @return Time-series data
+     * @throws IOException
+     */
+    public static TimeSeriesColumns readCsv(Path file, char delimiter) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            if (file.toString().endsWith(".gz"))
+                return readCsv(new GZIPInputStream(inputStream, BUFFER_SIZE), delimiter);
+            return readCsv(inputStream, delimiter);
+        }
+    }
+
+    /**
+     * Read "timestamp[delimiter]value" lines. Further fields are ignored.
+     * @param inputStream Source of the lines, not closed
+     * @param delimiter Field delimiter
+     * @return Time-series data
+     * @throws IOException
+     */
+    public static TimeSeriesColumns readCsv(InputStream inputStream, char delimiter) throws IOException {
+        if (delimiter > 0x7F) throw new IllegalArgumentException("Delimiter must be an ASCII character");
+
+        ColumnReader reader = new ColumnReader();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            int end = length;
+            while (end > length - read && buffer[end - 1] != '\n') end--;
+            int start = 0;
+            if (end > length - read) {
+                while (start < end) start = reader.parseLine(buffer, start, end, (byte) delimiter);
+            }
+            length -= start;
+            System.arraycopy(buffer, start, buffer, 0, length);
+            if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        reader.lineNumber++;
+        reader.parseFields(buffer, 0, length, (byte) delimiter);
+
+        return reader.toColumns();
+    }
+
+    /**
+     * Read raw little-endian columns of 64-bit timestamps and 64-bit floating-point values by memory mapping
+     * @param timestampsFile File of timestamps
+     * @param valuesFile File of values, aligned with the timestamps
+     * @return Time-series data
+     * @throws IOException
+     */
+    public static TimeSeriesColumns readBinary(Path timestampsFile, Path valuesFile) throws IOException {
+        try (FileChannel timestampsChannel = FileChannel.open(timestampsFile, StandardOpenOption.READ);
+             FileChannel valuesChannel = FileChannel.open(valuesFile, StandardOpenOption.READ)) {
+            long numPoints = timestampsChannel.size() / Long.BYTES;
+            if (timestampsChannel.size() % Long.BYTES != 0 || valuesChannel.size() != timestampsChannel.size())
+                throw new IOException("Expected two columns of " + numPoints + " 8-byte elements");
+            if (numPoints > Integer.MAX_VALUE - 8) throw new IOException("Too many points: " + numPoints);
+
+            long[] timestamps = new long[(int) numPoints];
+            double[] values = new double[(int) numPoints];
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int offset = 0; offset < timestamps.length; offset += MAPPED_CHUNK) {
+                int length = Math.min(MAPPED_CHUNK, timestamps.length - offset);
+                LongBuffer timestampBuffer = map(timestampsChannel, offset, length).asLongBuffer();
+                DoubleBuffer valueBuffer = map(valuesChannel, offset, length).asDoubleBuffer();
+                timestampBuffer.get(timestamps, offset, length);
+                valueBuffer.get(values, offset, length);
+                for (int i = offset; i < offset + length; i++) {
+                    min = Math.min(min, values[i]);
+                    max = Math.max(max, values[i]);
+                }
+            }
+
+            return new TimeSeriesColumns(timestamps, values, min, max);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long offset, int length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset * Long.BYTES, (long) length * Long.BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        return buffer;
+    }
+
+    private TimeSeriesColumns toColumns() throws IOException {
+        if (size == 0) throw new IOException("No points");
+
+        return new TimeSeriesColumns(Arrays.copyOf(timestamps, size), Arrays.copyOf(values, size), min, max);
+    }
+
+    // Parses the line starting at start, where end - 1 is a newline, and returns the start of the next line. Lines of
+    // a plain integer timestamp and a plain decimal value are parsed in one pass, the rest field by field
+    private int parseLine(byte[] buffer, int start, int end, byte delimiter) throws IOException {
+        lineNumber++;
+        int i = start;
+        boolean negative = buffer[i] == '-';
+        if (negative) i++;
+        long timestamp = 0;
+        int digits = 0;
+        for (int digit; (digit = buffer[i] - '0') >= 0 && digit <= 9; i++, digits++) timestamp = timestamp * 10 + digit;
+        if (digits == 0 || digits > 18 || buffer[i] != delimiter) return parseLineSlow(buffer, start, end, delimiter);
+        if (negative) timestamp = -timestamp;
+
+        i++;
+        boolean negativeValue = buffer[i] == '-';
+        if (negativeValue) i++;
+        long mantissa = 0;
+        int exponent = 0;
+        digits = 0;
+        for (int digit; (digit = buffer[i] - '0') >= 0 && digit <= 9; i++, digits++) mantissa = mantissa * 10 + digit;
+        if (buffer[i] == '.') {
+            for (i++; buffer[i] >= '0' && buffer[i] <= '9'; i++, digits++, exponent--) mantissa = mantissa * 10 + (buffer[i] - '0');
+        }
+        byte next = buffer[i];
+        if (digits == 0 || digits > 18 || mantissa >= 1L << 53 || exponent < -22 || (next != '\n' && next != '\r' && next != delimiter))
+            return parseLineSlow(buffer, start, end, delimiter);
+        double value = mantissa / POWERS_OF_TEN[-exponent];
+
+        while (buffer[i] != '\n') i++;
+        add(timestamp, negativeValue ? -value : value);
+        return i + 1;
+    }
+
+    private int parseLineSlow(byte[] buffer, int start, int end, byte delimiter) throws IOException {
+        int lineEnd = indexOf(buffer, start, end, (byte) '\n');
+        parseFields(buffer, start, lineEnd, delimiter);
+        return lineEnd + 1;
+    }
+
+    private void parseFields(byte[] buffer, int start, int end, byte delimiter) throws IOException {
+        if (end > start && buffer[end - 1] == '\r') end--;
+        while (start < end && buffer[start] <= ' ') start++;
+        if (start == end) return;
+
+        int separator = indexOf(buffer, start, end, delimiter);
+        if (separator == -1) throw invalidLine(buffer, start, end);
+        int valueEnd = indexOf(buffer, separator + 1, end, delimiter);
+        if (valueEnd == -1) valueEnd = end;
+
+        add(parseLong(buffer, start, separator), parseDouble(buffer, separator + 1, valueEnd));
+    }
+
+    private void add(long timestamp, double value) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size + (size >> 1));
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    private static int indexOf(byte[] buffer, int start, int end, byte target) {
+        for (int i = start; i < end; i++) if (buffer[i] == target) return i;
+        return -1;
+    }
+
+    private long parseLong(byte[] buffer, int start, int end) throws IOException {
+        int i = start;
+        while (i < end && buffer[i] <= ' ') i++;
+        while (end > i && buffer[end - 1] <= ' ') end--;
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative || (i < end && buffer[i] == '+')) i++;
+        if (i == end || end - i > 18) return parseLongSlow(buffer, start, end);
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) throw invalidLine(buffer, start, end);
+            value = value * 10 + digit;
+        }
+
+        return negative ? -value : value;
+    }
+
+    private long parseLongSlow(byte[] buffer, int start, int end) throws IOException {
+        try {
+            return Long.parseLong(new String(buffer, start, end - start, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            throw invalidLine(buffer, start, end);
+        }
+    }
+
+    // Exact when the significant digits fit in 53 bits and the power of ten is exactly representable, as both
+    // operands are then exact and IEEE 754 rounds the single multiplication or division correctly
+    private double parseDouble(byte[] buffer, int start, int end) throws IOException {
+        int i = start;
+        while (i < end && buffer[i] <= ' ') i++;
+        while (end > i && buffer[end - 1] <= ' ') end--;
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative || (i < end && buffer[i] == '+')) i++;
+
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa == 0 && c == '0') {
+                    if (point) exponent--;
+                    continue;
+                }
+                if (++significantDigits > 18) return parseDoubleSlow(buffer, start, end);
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) exponent--;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) return parseDoubleSlow(buffer, start, end);
+        if (i < end) {
+            if ((buffer[i] != 'e' && buffer[i] != 'E') || i + 1 == end) return parseDoubleSlow(buffer, start, end);
+            i++;
+            boolean negativeExponent = buffer[i] == '-';
+            if (negativeExponent || buffer[i] == '+') i++;
+            if (i == end || end - i > 4) return parseDoubleSlow(buffer, start, end);
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) return parseDoubleSlow(buffer, start, end);
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double value;
+        if (mantissa == 0) value = 0;
+        else if (mantissa >= 1L << 53 || exponent < -22 || exponent > 22) return parseDoubleSlow(buffer, start, end);
+        else value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+
+        return negative ? -value : value;
+    }
+
+    private double parseDoubleSlow(byte[] buffer, int start, int end) throws IOException {
+        try {
+            return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw invalidLine(buffer, start, end);
+        }
+    }
+
+    private IOException invalidLine(byte[] buffer, int start, int end) {
+        return new IOException("Invalid line " + lineNumber + ": " + new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+    }
+}
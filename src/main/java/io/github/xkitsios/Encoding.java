@@ -0,0 +1,16 @@
+package io.github.xkitsios;
+
+/**
+ * Layout of the segments in a binary representation. Decompression detects the layout, so both can be mixed freely.
+ */
+public enum Encoding {
+    /**
+     * Variable-byte integers interleaved with float slopes and starting values
+     */
+    VARIABLE_BYTE,
+    /**
+     * Integer columns bit-packed in blocks of 128, and slopes quantized to the fewest bits that stay within the
+     * error. Slopes and starting values decode to exactly the values compression checked the error with.
+     */
+    BIT_PACKED
+}
@@ -0,0 +1,39 @@
+package io.github.xkitsios;
+
+/**
+ * Thrown by compress in verify mode when a reconstructed value is further from the original than the tolerance
+ */
+public class ErrorBoundException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final long timestamp;
+    private final double error;
+
+    /**
+     * Constructor for ErrorBoundException
+     * @param timestamp Timestamp of the point
+     * @param error Absolute error of the point
+     * @param tolerance Largest accepted absolute error
+     */
+    public ErrorBoundException(long timestamp, double error, double tolerance) {
+        super("Error " + error + " at timestamp " + timestamp + " exceeds " + tolerance);
+        this.timestamp = timestamp;
+        this.error = error;
+    }
+
+    /**
+     * Getter for timestamp
+     * @return Timestamp of the point
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Getter for error
+     * @return Absolute error of the point
+     */
+    public double getError() {
+        return error;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.xkitsios;
+
+/**
+ * Absolute error of the reconstructed values against the original ones, accumulated by compress in verify mode.
+ * The same instance can accumulate the errors of several compressions.
+ */
+public class ErrorStats {
+    private final double tolerance;
+    private long numPoints;
+    private double sumError;
+    private double maxError;
+    private long maxErrorTimestamp;
+    private long numViolations;
+
+    /**
+     * Constructor for ErrorStats that only collects statistics
+     */
+    public ErrorStats() {
+        this(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Constructor for ErrorStats that makes compression fail on the first error above a tolerance
+     * @param tolerance Largest accepted absolute error
+     */
+    public ErrorStats(double tolerance) {
+        if (!(tolerance >= 0)) throw new IllegalArgumentException("Tolerance must not be negative");
+        this.tolerance = tolerance;
+    }
+
+    void accept(long timestamp, double error, double bound) throws ErrorBoundException {
+        numPoints++;
+        sumError += error;
+        if (error > maxError) {
+            maxError = error;
+            maxErrorTimestamp = timestamp;
+        }
+        if (error > bound) numViolations++;
+        if (error > tolerance) throw new ErrorBoundException(timestamp, error, tolerance);
+    }
+
+    /**
+     * Number of verified points
+     * @return Number of points
+     */
+    public long getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * Largest absolute error
+     * @return Maximum error
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * Timestamp of the first point with the largest absolute error
+     * @return Timestamp
+     */
+    public long getMaxErrorTimestamp() {
+        return maxErrorTimestamp;
+    }
+
+    /**
+     * Mean absolute error
+     * @return Mean error
+     */
+    public double getMeanError() {
+        return numPoints == 0 ? 0 : sumError / numPoints;
+    }
+
+    /**
+     * Number of points whose absolute error exceeds the maximum absolute error given to compress. Slopes and
+     * starting values are stored as floats, so a few points may exceed it by a tiny fraction.
+     * @return Number of points
+     */
+    public long getNumViolations() {
+        return numViolations;
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.xkitsios;
+
+/**
+ * A value computed from compressed time series, with the range the value over the original data is guaranteed to
+ * lie in given the maximum absolute errors of the compressed series
+ */
+public class Estimate {
+    private final double value;
+    private final double lower;
+    private final double upper;
+
+    /**
+     * Constructor for Estimate
+     * @param value Value over the reconstructed series
+     * @param lower Lower bound of the value over the original series
+     * @param upper Upper bound of the value over the original series
+     */
+    public Estimate(double value, double lower, double upper) {
+        this.value = value;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Getter for value
+     * @return Value over the reconstructed series
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Getter for lower
+     * @return Lower bound of the value over the original series
+     */
+    public double getLower() {
+        return lower;
+    }
+
+    /**
+     * Getter for upper
+     * @return Upper bound of the value over the original series
+     */
+    public double getUpper() {
+        return upper;
+    }
+}
@@ -0,0 +1,495 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.EndDirective;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Mix-Piece compression of a time series of arbitrary length under a fixed memory budget. Points are cut into
+ * segments as they are written. Segments are sorted externally, with runs spilled to temporary files and k-way
+ * merged, for the grouping per starting value, the grouping of the rest per slope range and each serialized section.
+ * The sections are streamed to a temporary file and compressed with Zstd into the output on close. The binary
+ * representation is the one MixPiece.compress produces for the same points.
+ */
+public class ExternalMixPiece implements Closeable {
+    /**
+     * Smallest memory budget accepted
+     */
+    public static final long MIN_MEMORY_BUDGET = 1 << 20;
+
+    // Bytes per buffered segment: its four columns, and either the columns it is copied from while the buffer grows
+    // or the two index arrays of SegmentStore.sort
+    private static final int SEGMENT_BYTES = 48;
+
+    private final OutputStream outputStream;
+    private final double epsilon;
+    private final int runCapacity;
+    private final int fanIn;
+    private final Path directory;
+    private final SegmentSorter segments;
+
+    private final Candidate ceil = new Candidate();
+    private final Candidate floor = new Candidate();
+    // Points of the segment under construction, which is never empty once a point was written
+    private long numPoints;
+    private long initTimestamp;
+    private double firstValue;
+    private int globalMinB;
+    private long lastTimeStamp;
+
+    /**
+     * Constructor for ExternalMixPiece. At most three quarters of the budget buffer segments, in up to three
+     * sorts at once, and an eighth buffers the reads of merged runs.
+     * @param outputStream Destination of the binary representation, written and closed on close
+     * @param error Maximum absolute error
+     * @param memoryBudget Bytes of heap for segments and buffers, at least MIN_MEMORY_BUDGET
+     * @param tempDirectory Directory of the temporary files, which are deleted on close
+     * @throws IOException
+     */
+    public ExternalMixPiece(OutputStream outputStream, double error, long memoryBudget, Path tempDirectory) throws IOException {
+        this(outputStream, error, tempDirectory, runCapacity(memoryBudget), fanIn(memoryBudget));
+    }
+
+    ExternalMixPiece(OutputStream outputStream, double error, Path tempDirectory, int runCapacity, int fanIn) throws IOException {
+        if (error <= 0) throw new IllegalArgumentException("Error must be positive");
+        this.outputStream = outputStream;
+        this.epsilon = error;
+        this.runCapacity = runCapacity;
+        this.fanIn = fanIn;
+        this.directory = Files.createTempDirectory(tempDirectory, "mix-piece");
+        this.segments = sorter(ExternalMixPiece::compareBA);
+    }
+
+    private static int runCapacity(long memoryBudget) {
+        if (memoryBudget < MIN_MEMORY_BUDGET)
+            throw new IllegalArgumentException("Memory budget must be at least " + MIN_MEMORY_BUDGET + " bytes");
+        return (int) Math.min(Integer.MAX_VALUE - 8, memoryBudget / 4 / SEGMENT_BYTES);
+    }
+
+    private static int fanIn(long memoryBudget) {
+        return (int) Math.max(2, Math.min(1 << 16, memoryBudget / 8 / SegmentSorter.IO_BUFFER));
+    }
+
+    /**
+     * Compress one point
+     * @param timestamp Timestamp, later than every point written before
+     * @param value Value
+     * @throws IOException
+     */
+    public void write(long timestamp, double value) throws IOException {
+        lastTimeStamp = timestamp;
+        if (numPoints++ == 0) {
+            start(timestamp, value);
+            return;
+        }
+        long elapsed = timestamp - initTimestamp;
+        long count = numPoints - 1;
+        ceil.fit(elapsed, value, epsilon, count);
+        floor.fit(elapsed, value, epsilon, count);
+        if (ceil.end < 0 || floor.end < 0) return;
+
+        addSegment();
+        start(timestamp, value);
+    }
+
+    /**
+     * Compress a range of time-series columns, without allocating per point
+     * @param timestamps Timestamps, later than every point written before
+     * @param values Values, aligned with timestamps
+     * @param from First index (inclusive)
+     * @param to Last index (exclusive)
+     * @throws IOException
+     */
+    public void write(long[] timestamps, double[] values, int from, int to) throws IOException {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        for (int i = from; i < to; i++) write(timestamps[i], values[i]);
+    }
+
+    /**
+     * Merge and serialize the segments, write the binary representation and close the output stream. The
+     * temporary files are deleted.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (numPoints == 0) throw new IllegalStateException("No points to compress");
+            if (ceil.end < 0) ceil.end = numPoints;
+            if (floor.end < 0) floor.end = numPoints;
+            addSegment();
+
+            Path body = Files.createTempFile(directory, "body", ".tmp");
+            try (DataOutputStream bodyStream = SegmentSorter.output(body)) {
+                ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+                FloatEncoder.write((float) epsilon, outStream);
+                VariableByteEncoder.write(globalMinB, outStream);
+                serialize(bodyStream, outStream);
+                VariableByteEncoder.write((int) lastTimeStamp, outStream);
+                outStream.writeTo(bodyStream);
+            }
+            compress(body);
+        } finally {
+            try {
+                delete();
+            } finally {
+                outputStream.close();
+            }
+        }
+    }
+
+    // Like MixPiece.merge and the sections of MixPiece.toByteArray, one external sort at a time. Each sorter is
+    // closed, deleting its runs, as soon as its segments are written or split
+    private void serialize(DataOutputStream bodyStream, ByteArrayOutputStream outStream) throws IOException {
+        try (SegmentSorter restSegments = sorter((segments, i, j) -> Double.compare(segments.getB(i), segments.getB(j)))) {
+            try (SegmentSorter perASegments = sorter(ExternalMixPiece::compareAB)) {
+                try (SegmentSorter unmergedSegments = sorter((segments, i, j) -> Double.compare(segments.getAMin(i), segments.getAMin(j)))) {
+                    try (SegmentSorter perBSegments = sorter(this::comparePerB)) {
+                        try (SegmentSorter segments = this.segments) {
+                            Path groups = findGroups(segments, true);
+                            splitGroups(segments, groups, perBSegments, unmergedSegments);
+                        }
+                        writePerBSegments(perBSegments, bodyStream, outStream);
+                    }
+                    if (unmergedSegments.size() > 0) {
+                        Path groups = findGroups(unmergedSegments, false);
+                        splitGroups(unmergedSegments, groups, perASegments, restSegments);
+                    }
+                }
+                writePerASegments(perASegments, bodyStream, outStream);
+            }
+            writeRestSegments(restSegments, bodyStream, outStream);
+        }
+    }
+
+    private SegmentSorter sorter(SegmentSorter.Order order) {
+        return new SegmentSorter(order, runCapacity, fanIn, directory);
+    }
+
+    private static int compareBA(SegmentStore segments, int i, int j) {
+        int compare = Double.compare(segments.getB(i), segments.getB(j));
+        return compare != 0 ? compare : Double.compare(segments.getA(i), segments.getA(j));
+    }
+
+    private static int compareAB(SegmentStore segments, int i, int j) {
+        int compare = Double.compare(segments.getA(i), segments.getA(j));
+        return compare != 0 ? compare : Double.compare(segments.getB(i), segments.getB(j));
+    }
+
+    private int comparePerB(SegmentStore segments, int i, int j) {
+        int compare = Integer.compare(bKey(segments.getB(i)), bKey(segments.getB(j)));
+        if (compare == 0) compare = Double.compare(segments.getA(i), segments.getA(j));
+        return compare != 0 ? compare : Long.compare(segments.getInitTimestamp(i), segments.getInitTimestamp(j));
+    }
+
+    private int bKey(double b) {
+        return (int) Math.round(b / epsilon) - globalMinB;
+    }
+
+    /*
+     * A segment of MixPiece.createSegment under construction, with a starting value quantized by ceil or floor.
+     * Its end is the number of points it covers once a point did not fit, and negative before.
+     */
+    private static final class Candidate {
+        private double b;
+        private double aMin;
+        private double aMax;
+        private long end;
+
+        private void start(double b) {
+            this.b = b;
+            aMin = -Double.MAX_VALUE;
+            aMax = Double.MAX_VALUE;
+            end = -1;
+        }
+
+        private void fit(long elapsed, double value, double epsilon, long count) {
+            if (end >= 0) return;
+            double upValue = value + epsilon;
+            double downValue = value - epsilon;
+            if (count == 1) {
+                aMax = (upValue - b) / elapsed;
+                aMin = (downValue - b) / elapsed;
+                return;
+            }
+
+            double upLim = aMax * elapsed + b;
+            double downLim = aMin * elapsed + b;
+            if (downValue > upLim || upValue < downLim) {
+                end = count;
+                return;
+            }
+            if (upValue < upLim)
+                aMax = Math.max((upValue - b) / elapsed, aMin);
+            if (downValue > downLim)
+                aMin = Math.min((downValue - b) / elapsed, aMax);
+        }
+    }
+
+    private void start(long timestamp, double value) {
+        initTimestamp = timestamp;
+        firstValue = value;
+        ceil.start((int) Math.ceil(value / epsilon) * epsilon);
+        floor.start((int) Math.floor(value / epsilon) * epsilon);
+        numPoints = 1;
+    }
+
+    // Keeps the candidate covering more points, with the tie broken as in MixPiece.compress
+    private void addSegment() throws IOException {
+        Candidate segment;
+        if (ceil.end != floor.end) segment = ceil.end > floor.end ? ceil : floor;
+        else segment = Math.round(firstValue / epsilon) == Math.ceil(firstValue / epsilon) ? ceil : floor;
+        segments.add(initTimestamp, segment.aMin, segment.aMax, segment.b);
+        globalMinB = (int) Math.min(globalMinB, segment.b / epsilon);
+    }
+
+    // First pass of mergePerB or mergeAll over the sorted segments, writing the size and slope range of each group
+    private Path findGroups(SegmentSorter sorted, boolean perB) throws IOException {
+        Path groups = Files.createTempFile(directory, "groups", ".tmp");
+        try (SegmentSorter.Cursor cursor = sorted.cursor(); DataOutputStream groupStream = SegmentSorter.output(groups)) {
+            long size = 0;
+            double aMin = 0;
+            double aMax = 0;
+            double b = 0;
+            while (cursor.next()) {
+                if (size > 0 && (!perB || cursor.getB() == b) && cursor.getAMin() <= aMax && cursor.getAMax() >= aMin) {
+                    aMin = Math.max(aMin, cursor.getAMin());
+                    aMax = Math.min(aMax, cursor.getAMax());
+                    size++;
+                    continue;
+                }
+                if (size > 0) writeGroup(groupStream, size, aMin, aMax);
+                size = 1;
+                aMin = cursor.getAMin();
+                aMax = cursor.getAMax();
+                b = cursor.getB();
+            }
+            if (size > 0) writeGroup(groupStream, size, aMin, aMax);
+        }
+
+        return groups;
+    }
+
+    private static void writeGroup(DataOutputStream groupStream, long size, double aMin, double aMax) throws IOException {
+        groupStream.writeLong(size);
+        groupStream.writeDouble(aMin);
+        groupStream.writeDouble(aMax);
+    }
+
+    // Second pass, moving groups with their common slope range to merged and single segments to unmerged
+    private static void splitGroups(SegmentSorter sorted, Path groups, SegmentSorter merged, SegmentSorter unmerged) throws IOException {
+        try (SegmentSorter.Cursor cursor = sorted.cursor(); DataInputStream groupStream = SegmentSorter.input(groups)) {
+            long size = 0;
+            long remaining = 0;
+            double aMin = 0;
+            double aMax = 0;
+            while (cursor.next()) {
+                if (remaining == 0) {
+                    size = groupStream.readLong();
+                    aMin = groupStream.readDouble();
+                    aMax = groupStream.readDouble();
+                    remaining = size;
+                }
+                remaining--;
+                (size == 1 ? unmerged : merged).add(cursor.getInitTimestamp(), aMin, aMax, cursor.getB());
+            }
+        }
+        Files.delete(groups);
+    }
+
+    // Counts go before what they count, so a first pass writes the number of slopes per starting value and the
+    // number of timestamps per slope
+    private void writePerBSegments(SegmentSorter segments, DataOutputStream bodyStream, ByteArrayOutputStream outStream) throws IOException {
+        Path numAs = Files.createTempFile(directory, "counts", ".tmp");
+        Path numTimestamps = Files.createTempFile(directory, "counts", ".tmp");
+        int numB = 0;
+        try (SegmentSorter.Cursor cursor = segments.cursor();
+             DataOutputStream numAStream = SegmentSorter.output(numAs);
+             DataOutputStream numTimestampStream = SegmentSorter.output(numTimestamps)) {
+            int b = 0;
+            double a = 0;
+            int numA = 0;
+            int count = 0;
+            while (cursor.next()) {
+                if (numB == 0 || bKey(cursor.getB()) != b) {
+                    if (numB > 0) {
+                        numTimestampStream.writeInt(count);
+                        numAStream.writeInt(numA);
+                    }
+                    numB++;
+                    numA = 1;
+                    count = 1;
+                } else if (Double.compare(cursor.getA(), a) != 0) {
+                    numTimestampStream.writeInt(count);
+                    numA++;
+                    count = 1;
+                } else {
+                    count++;
+                }
+                b = bKey(cursor.getB());
+                a = cursor.getA();
+            }
+            if (numB > 0) {
+                numTimestampStream.writeInt(count);
+                numAStream.writeInt(numA);
+            }
+        }
+
+        VariableByteEncoder.write(numB, outStream);
+        if (numB > 0) {
+            try (SegmentSorter.Cursor cursor = segments.cursor();
+                 DataInputStream numAStream = SegmentSorter.input(numAs);
+                 DataInputStream numTimestampStream = SegmentSorter.input(numTimestamps)) {
+                int previousB = 0;
+                int remainingA = 0;
+                int remainingTimestamps = 0;
+                long previousTS = 0;
+                boolean first = true;
+                while (cursor.next()) {
+                    int b = bKey(cursor.getB());
+                    if (first) {
+                        VariableByteEncoder.write(b, outStream);
+                        previousB = b;
+                        first = false;
+                    }
+                    if (remainingTimestamps == 0) {
+                        if (remainingA == 0) {
+                            VariableByteEncoder.write(b - previousB, outStream);
+                            previousB = b;
+                            remainingA = numAStream.readInt();
+                            VariableByteEncoder.write(remainingA, outStream);
+                        }
+                        remainingA--;
+                        remainingTimestamps = numTimestampStream.readInt();
+                        FloatEncoder.write((float) cursor.getA(), outStream);
+                        VariableByteEncoder.write(remainingTimestamps, outStream);
+                        previousTS = 0;
+                    }
+                    remainingTimestamps--;
+                    VariableByteEncoder.write((int) (cursor.getInitTimestamp() - previousTS), outStream);
+                    previousTS = cursor.getInitTimestamp();
+                    flush(bodyStream, outStream);
+                }
+            }
+        }
+        Files.delete(numAs);
+        Files.delete(numTimestamps);
+    }
+
+    private void writePerASegments(SegmentSorter segments, DataOutputStream bodyStream, ByteArrayOutputStream outStream) throws IOException {
+        Path numBTs = Files.createTempFile(directory, "counts", ".tmp");
+        int numA = 0;
+        try (SegmentSorter.Cursor cursor = segments.cursor(); DataOutputStream numBTStream = SegmentSorter.output(numBTs)) {
+            double a = 0;
+            int count = 0;
+            while (cursor.next()) {
+                if (numA == 0 || Double.compare(cursor.getA(), a) != 0) {
+                    if (numA > 0) numBTStream.writeInt(count);
+                    numA++;
+                    count = 0;
+                }
+                count++;
+                a = cursor.getA();
+            }
+            if (numA > 0) numBTStream.writeInt(count);
+        }
+
+        VariableByteEncoder.write(numA, outStream);
+        try (SegmentSorter.Cursor cursor = segments.cursor(); DataInputStream numBTStream = SegmentSorter.input(numBTs)) {
+            int previousB = 0;
+            int remaining = 0;
+            while (cursor.next()) {
+                int b = bKey(cursor.getB());
+                if (remaining == 0) {
+                    remaining = numBTStream.readInt();
+                    FloatEncoder.write((float) cursor.getA(), outStream);
+                    VariableByteEncoder.write(remaining, outStream);
+                    previousB = b;
+                    VariableByteEncoder.write(previousB, outStream);
+                }
+                remaining--;
+                VariableByteEncoder.write(b - previousB, outStream);
+                previousB = b;
+                UIntEncoder.write(cursor.getInitTimestamp(), outStream);
+                flush(bodyStream, outStream);
+            }
+        }
+        Files.delete(numBTs);
+    }
+
+    private void writeRestSegments(SegmentSorter segments, DataOutputStream bodyStream, ByteArrayOutputStream outStream) throws IOException {
+        VariableByteEncoder.write((int) segments.size(), outStream);
+        try (SegmentSorter.Cursor cursor = segments.cursor()) {
+            int previousB = 0;
+            boolean first = true;
+            while (cursor.next()) {
+                int b = bKey(cursor.getB());
+                if (first) {
+                    VariableByteEncoder.write(b, outStream);
+                    previousB = b;
+                    first = false;
+                }
+                VariableByteEncoder.write(b - previousB, outStream);
+                previousB = b;
+                FloatEncoder.write((float) cursor.getA(), outStream);
+                UIntEncoder.write(cursor.getInitTimestamp(), outStream);
+                flush(bodyStream, outStream);
+            }
+        }
+    }
+
+    private static void flush(DataOutputStream bodyStream, ByteArrayOutputStream outStream) throws IOException {
+        if (outStream.size() < SegmentSorter.IO_BUFFER) return;
+        outStream.writeTo(bodyStream);
+        outStream.reset();
+    }
+
+    // One Zstd frame recording the size of the body, which is the frame Zstd.compress gives for it in memory
+    private void compress(Path body) throws IOException {
+        try (FileChannel channel = FileChannel.open(body); ZstdCompressCtx context = new ZstdCompressCtx()) {
+            context.setLevel(Zstd.defaultCompressionLevel());
+            context.setContentSize(true);
+            context.setPledgedSrcSize(channel.size());
+            ByteBuffer src = ByteBuffer.allocateDirect(SegmentSorter.IO_BUFFER);
+            ByteBuffer dst = ByteBuffer.allocateDirect((int) Zstd.compressBound(SegmentSorter.IO_BUFFER));
+            byte[] bytes = new byte[dst.capacity()];
+            long remaining = channel.size();
+            do {
+                src.clear();
+                while (src.hasRemaining() && channel.read(src) > 0) ;
+                src.flip();
+                remaining -= src.remaining();
+                EndDirective directive = remaining == 0 ? EndDirective.END : EndDirective.CONTINUE;
+                boolean flushed;
+                do {
+                    dst.clear();
+                    flushed = context.compressDirectByteBufferStream(dst, src, directive);
+                    dst.flip();
+                    int length = dst.remaining();
+                    dst.get(bytes, 0, length);
+                    outputStream.write(bytes, 0, length);
+                } while (src.hasRemaining() || (directive == EndDirective.END && !flushed));
+            } while (remaining > 0);
+        }
+    }
+
+    // Deletes the runs of every sorter, also of those not closed because compression failed
+    private void delete() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) Files.deleteIfExists(path);
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,487 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+
+/**
+ * Ingestion of an interleaved stream of (series, timestamp, value) points from many series into Sim-Piece blobs.
+ * Each series with unsealed points keeps its open segment in a primitive-keyed open-addressing table and extends it
+ * point by point exactly as Sim-Piece does in batch, so a sealed blob equals SimPiece.compress of the same points.
+ * A blob is sealed once it holds maxPoints points, once it is older than maxAgeMillis and on close. Sealed series
+ * leave the table, so idle series take no memory, and the table shrinks again after a burst of series is sealed.
+ * <p>
+ * The engine is shaped like a java.util.concurrent.Flow.Processor while staying on Java 8: points arrive through
+ * onNext, onError and onComplete from a single thread, and blobs go to one Subscriber as it requests them. When
+ * maxPendingBlobs blobs wait for demand, onNext blocks until the subscriber requests more.
+ */
+public class IngestionEngine implements AutoCloseable {
+    /**
+     * Receiver of sealed blobs, like java.util.concurrent.Flow.Subscriber
+     */
+    public interface Subscriber {
+        /**
+         * Called once before any other method
+         * @param subscription Subscription to request blobs with
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with each sealed blob, at most as many times as requested
+         * @param blob Sealed blob
+         */
+        void onNext(SealedBlob blob);
+
+        /**
+         * Called once if ingestion failed, without further blobs
+         * @param throwable Failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once after the last blob
+         */
+        void onComplete();
+    }
+
+    /**
+     * Demand of a Subscriber, like java.util.concurrent.Flow.Subscription
+     */
+    public interface Subscription {
+        /**
+         * Request more blobs
+         * @param n Number of blobs, positive
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving blobs. Later blobs are dropped and onNext no longer blocks.
+         */
+        void cancel();
+    }
+
+    private static final int CHECK_AGE_INTERVAL = 1 << 10;
+    private static final int MIN_CAPACITY = 16;
+
+    // Fields of a slot of the table, with the slopes and starting value as raw double bits
+    private static final int STRIDE = 8;
+    private static final int KEY = 0;
+    private static final int NUM_POINTS = 1;
+    private static final int FIRST_TIMESTAMP = 2;
+    private static final int LAST_TIMESTAMP = 3;
+    private static final int INIT_TIMESTAMP = 4;
+    private static final int A_MIN = 5;
+    private static final int A_MAX = 6;
+    private static final int B = 7;
+
+    private final double epsilon;
+    private final int maxPoints;
+    private final long maxAgeNanos;
+    private final int maxPendingBlobs;
+    private final ZstdCompressCtx context = new ZstdCompressCtx();
+
+    // Open-addressing table of the series with unsealed points, whose fields are kept together in one row of 64
+    // bytes so that a point touches one or two cache lines. A zero NUM_POINTS marks a free slot
+    private long[] table;
+    private long[] startNanos;
+    private SegmentStore[] closedSegments;
+    private int capacity;
+    private int numSeries;
+    private long numIngested;
+
+    // Series in the order their blobs started, for sealing by age. Entries of series sealed since are skipped
+    private long[] ageKeys = new long[16];
+    private long[] ageNanos = new long[16];
+    private int ageHead;
+    private int ageSize;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<SealedBlob> pending = new ArrayDeque<>();
+    private Subscriber subscriber;
+    private long demand;
+    private boolean delivering;
+    private volatile boolean cancelled;
+    private boolean completed;
+
+    /**
+     * Constructor for IngestionEngine
+     * @param error Maximum absolute error
+     * @param maxPoints Number of points after which a blob is sealed
+     * @param maxAgeMillis Time after its first point after which a blob is sealed, or Long.MAX_VALUE for no limit
+     * @param maxPendingBlobs Number of sealed blobs waiting for demand after which onNext blocks
+     */
+    public IngestionEngine(double error, int maxPoints, long maxAgeMillis, int maxPendingBlobs) {
+        if (!(error > 0)) throw new IllegalArgumentException("Error must be positive");
+        if (maxPoints <= 0 || maxAgeMillis < 0 || maxPendingBlobs <= 0)
+            throw new IllegalArgumentException("Limits must be positive");
+        this.epsilon = error;
+        this.maxPoints = maxPoints;
+        this.maxAgeNanos = maxAgeMillis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : maxAgeMillis * 1_000_000;
+        this.maxPendingBlobs = maxPendingBlobs;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Attach the single receiver of sealed blobs. Blobs sealed before are kept for it.
+     * @param subscriber Receiver of sealed blobs
+     */
+    public void subscribe(Subscriber subscriber) {
+        synchronized (lock) {
+            if (this.subscriber != null) throw new IllegalStateException("Already subscribed");
+            this.subscriber = subscriber;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) throw new IllegalArgumentException("Request must be positive");
+                synchronized (lock) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                synchronized (lock) {
+                    cancelled = true;
+                    pending.clear();
+                    lock.notifyAll();
+                }
+            }
+        });
+        drain();
+    }
+
+    /**
+     * Ingest a point. Blocks while maxPendingBlobs blobs wait for demand and this point seals another one.
+     * @param seriesId Series of the point
+     * @param timestamp Timestamp, greater than the previous one of the series
+     * @param value Value
+     * @throws InterruptedException If interrupted while waiting for demand
+     */
+    public void onNext(long seriesId, long timestamp, double value) throws InterruptedException {
+        if (completed) throw new IllegalStateException("Ingestion already completed");
+        int slot = slot(seriesId);
+        if (table[slot * STRIDE + NUM_POINTS] == 0) {
+            if ((numSeries + 1) * 2 > capacity) {
+                rehash(capacity * 2);
+                slot = slot(seriesId);
+            }
+            insert(slot, seriesId, timestamp);
+        } else if (timestamp <= table[slot * STRIDE + LAST_TIMESTAMP]) {
+            throw new IllegalArgumentException("Timestamp " + timestamp + " of series " + seriesId + " does not follow " + table[slot * STRIDE + LAST_TIMESTAMP]);
+        }
+        append(slot * STRIDE, timestamp, value);
+        if (table[slot * STRIDE + NUM_POINTS] >= maxPoints) {
+            seal(slot);
+            shrink();
+        }
+        if (maxAgeNanos != Long.MAX_VALUE && ++numIngested % CHECK_AGE_INTERVAL == 0) flushExpired();
+    }
+
+    /**
+     * Seal the blobs older than maxAgeMillis. Called every few points by onNext, and meant to be called by the
+     * ingesting thread when no points arrive.
+     * @throws InterruptedException If interrupted while waiting for demand
+     */
+    public void flushExpired() throws InterruptedException {
+        if (maxAgeNanos == Long.MAX_VALUE) return;
+        long now = System.nanoTime();
+        while (ageSize > 0 && now - ageNanos[ageHead] >= maxAgeNanos) {
+            long seriesId = ageKeys[ageHead];
+            long started = ageNanos[ageHead];
+            ageHead = (ageHead + 1) & (ageKeys.length - 1);
+            ageSize--;
+            int slot = slot(seriesId);
+            if (table[slot * STRIDE + NUM_POINTS] != 0 && startNanos[slot] == started) seal(slot);
+        }
+        shrink();
+    }
+
+    /**
+     * Seal the blobs of all series
+     * @throws InterruptedException If interrupted while waiting for demand
+     */
+    public void flush() throws InterruptedException {
+        for (int slot = 0; slot < capacity; slot++)
+            while (table[slot * STRIDE + NUM_POINTS] != 0) seal(slot);
+        ageSize = 0;
+        shrink();
+    }
+
+    /**
+     * Seal the blobs of all series and complete the subscriber once it has received them
+     * @throws InterruptedException If interrupted while waiting for demand
+     */
+    public void onComplete() throws InterruptedException {
+        if (completed) return;
+        flush();
+        context.close();
+        synchronized (lock) {
+            completed = true;
+        }
+        drain();
+    }
+
+    /**
+     * Drop all unsealed points and pending blobs and fail the subscriber
+     * @param throwable Failure of the upstream
+     */
+    public void onError(Throwable throwable) {
+        allocate(MIN_CAPACITY);
+        ageSize = 0;
+        context.close();
+        Subscriber failed;
+        synchronized (lock) {
+            completed = true;
+            pending.clear();
+            failed = cancelled ? null : subscriber;
+            cancelled = true;
+            lock.notifyAll();
+        }
+        if (failed != null) failed.onError(throwable);
+    }
+
+    /**
+     * Same as onComplete, except that if interrupted while waiting for demand, the interrupt status of the thread is
+     * set again instead of throwing, and the remaining blobs are not sealed
+     */
+    @Override
+    public void close() {
+        try {
+            onComplete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of series with unsealed points
+     * @return Number of series
+     */
+    public int getNumOpenSeries() {
+        return numSeries;
+    }
+
+    /**
+     * Number of sealed blobs waiting for demand
+     * @return Number of blobs
+     */
+    public int getNumPendingBlobs() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    // Incremental form of SimPiece.createSegment: the open segment of the row is extended by one point, or closed
+    // and replaced by a new one starting at the point
+    private void append(int row, long timestamp, double value) {
+        boolean singlePoint = table[row + LAST_TIMESTAMP] == table[row + INIT_TIMESTAMP];
+        table[row + LAST_TIMESTAMP] = timestamp;
+        if (++table[row + NUM_POINTS] == 1) {
+            startSegment(row, timestamp, value);
+            return;
+        }
+        long initTimestamp = table[row + INIT_TIMESTAMP];
+        double b = Double.longBitsToDouble(table[row + B]);
+        if (singlePoint) {
+            table[row + A_MAX] = Double.doubleToRawLongBits(((value + epsilon) - b) / (timestamp - initTimestamp));
+            table[row + A_MIN] = Double.doubleToRawLongBits(((value - epsilon) - b) / (timestamp - initTimestamp));
+            return;
+        }
+
+        double aMin = Double.longBitsToDouble(table[row + A_MIN]);
+        double aMax = Double.longBitsToDouble(table[row + A_MAX]);
+        double upValue = value + epsilon;
+        double downValue = value - epsilon;
+        double upLim = aMax * (timestamp - initTimestamp) + b;
+        double downLim = aMin * (timestamp - initTimestamp) + b;
+        if (downValue > upLim || upValue < downLim) {
+            closeSegment(row);
+            startSegment(row, timestamp, value);
+            return;
+        }
+        if (upValue < upLim)
+            aMax = Math.max((upValue - b) / (timestamp - initTimestamp), aMin);
+        if (downValue > downLim)
+            aMin = Math.min((downValue - b) / (timestamp - initTimestamp), aMax);
+        table[row + A_MIN] = Double.doubleToRawLongBits(aMin);
+        table[row + A_MAX] = Double.doubleToRawLongBits(aMax);
+    }
+
+    private void startSegment(int row, long timestamp, double value) {
+        table[row + INIT_TIMESTAMP] = timestamp;
+        table[row + B] = Double.doubleToRawLongBits(Math.round(value / epsilon) * epsilon);
+        table[row + A_MIN] = Double.doubleToRawLongBits(-Double.MAX_VALUE);
+        table[row + A_MAX] = Double.doubleToRawLongBits(Double.MAX_VALUE);
+    }
+
+    private void closeSegment(int row) {
+        int slot = row / STRIDE;
+        if (closedSegments[slot] == null) closedSegments[slot] = new SegmentStore(4);
+        closedSegments[slot].add(table[row + INIT_TIMESTAMP], Double.longBitsToDouble(table[row + A_MIN]),
+                Double.longBitsToDouble(table[row + A_MAX]), Double.longBitsToDouble(table[row + B]));
+    }
+
+    private void seal(int slot) throws InterruptedException {
+        int row = slot * STRIDE;
+        closeSegment(row);
+        SealedBlob blob = null;
+        if (!cancelled) {
+            try {
+                blob = new SealedBlob(table[row + KEY], table[row + FIRST_TIMESTAMP], table[row + LAST_TIMESTAMP],
+                        (int) table[row + NUM_POINTS], SimPiece.compress(closedSegments[slot], table[row + LAST_TIMESTAMP], epsilon, context));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        remove(slot);
+        if (blob != null) emit(blob);
+    }
+
+    private void emit(SealedBlob blob) throws InterruptedException {
+        synchronized (lock) {
+            while (!cancelled && pending.size() >= maxPendingBlobs) lock.wait();
+            if (cancelled) return;
+            pending.add(blob);
+        }
+        drain();
+    }
+
+    // Delivers pending blobs while there is demand, and completion once none are left. Blobs are taken holding lock
+    // and delivered without it, so the subscriber may request or cancel from any thread. Only one caller runs the
+    // loop: the others, including subscribers requesting from within onNext, only change what it checks next, and
+    // it stops in the same critical section that finds nothing left to do
+    private void drain() {
+        Subscriber receiver;
+        synchronized (lock) {
+            if (delivering || subscriber == null || cancelled) return;
+            delivering = true;
+            receiver = subscriber;
+        }
+        boolean idle = false;
+        try {
+            while (!idle) {
+                SealedBlob blob = null;
+                synchronized (lock) {
+                    if (!cancelled && demand > 0 && !pending.isEmpty()) {
+                        if (demand != Long.MAX_VALUE) demand--;
+                        blob = pending.poll();
+                    } else if (!cancelled && completed && pending.isEmpty()) {
+                        cancelled = true;
+                    } else {
+                        delivering = false;
+                        idle = true;
+                    }
+                    lock.notifyAll();
+                }
+                if (blob != null) receiver.onNext(blob);
+                else if (!idle) receiver.onComplete();
+            }
+        } finally {
+            if (!idle) {
+                synchronized (lock) {
+                    delivering = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // The slot stays marked free until append counts the first point
+    private void insert(int slot, long seriesId, long timestamp) {
+        int row = slot * STRIDE;
+        table[row + KEY] = seriesId;
+        table[row + FIRST_TIMESTAMP] = timestamp;
+        closedSegments[slot] = null;
+        numSeries++;
+        if (maxAgeNanos != Long.MAX_VALUE) {
+            startNanos[slot] = System.nanoTime();
+            enqueueAge(seriesId, startNanos[slot]);
+        }
+    }
+
+    private void enqueueAge(long seriesId, long nanos) {
+        if (ageSize == ageKeys.length) {
+            long[] newKeys = new long[ageKeys.length * 2];
+            long[] newNanos = new long[ageKeys.length * 2];
+            for (int i = 0; i < ageSize; i++) {
+                newKeys[i] = ageKeys[(ageHead + i) & (ageKeys.length - 1)];
+                newNanos[i] = ageNanos[(ageHead + i) & (ageKeys.length - 1)];
+            }
+            ageKeys = newKeys;
+            ageNanos = newNanos;
+            ageHead = 0;
+        }
+        int tail = (ageHead + ageSize) & (ageKeys.length - 1);
+        ageKeys[tail] = seriesId;
+        ageNanos[tail] = nanos;
+        ageSize++;
+    }
+
+    private static int hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    // Slot holding seriesId, or the free slot where it belongs
+    private int slot(long seriesId) {
+        int mask = capacity - 1;
+        int slot = hash(seriesId) & mask;
+        while (table[slot * STRIDE + NUM_POINTS] != 0 && table[slot * STRIDE + KEY] != seriesId) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // Backward-shift deletion, so that lookups never need tombstones
+    private void remove(int slot) {
+        int mask = capacity - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; table[i * STRIDE + NUM_POINTS] != 0; i = (i + 1) & mask) {
+            if (((i - (hash(table[i * STRIDE + KEY]) & mask)) & mask) >= ((i - hole) & mask)) {
+                System.arraycopy(table, i * STRIDE, table, hole * STRIDE, STRIDE);
+                startNanos[hole] = startNanos[i];
+                closedSegments[hole] = closedSegments[i];
+                hole = i;
+            }
+        }
+        table[hole * STRIDE + NUM_POINTS] = 0;
+        closedSegments[hole] = null;
+        numSeries--;
+    }
+
+    // Halves the table while at most an eighth of it is used. Growing at half keeps rehashes amortized constant
+    private void shrink() {
+        while (capacity > MIN_CAPACITY && numSeries * 8 < capacity) rehash(capacity / 2);
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldTable = table;
+        long[] oldStartNanos = startNanos;
+        SegmentStore[] oldClosedSegments = closedSegments;
+        int oldCapacity = capacity;
+        int size = numSeries;
+        allocate(newCapacity);
+        numSeries = size;
+        for (int i = 0; i < oldCapacity; i++) {
+            if (oldTable[i * STRIDE + NUM_POINTS] == 0) continue;
+            int slot = slot(oldTable[i * STRIDE + KEY]);
+            System.arraycopy(oldTable, i * STRIDE, table, slot * STRIDE, STRIDE);
+            startNanos[slot] = oldStartNanos[i];
+            closedSegments[slot] = oldClosedSegments[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        table = new long[capacity * STRIDE];
+        startNanos = new long[capacity];
+        closedSegments = new SegmentStore[capacity];
+        numSeries = 0;
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.xkitsios;
+
+/**
+ * A range of timestamps [start, end] returned by a search over a compressed time series
+ */
+public class Interval {
+    private final long start;
+    private final long end;
+    private final boolean definite;
+
+    /**
+     * Constructor for Interval
+     * @param start First timestamp (inclusive)
+     * @param end Last timestamp (inclusive)
+     * @param definite Whether every original value in the range is guaranteed to match
+     */
+    public Interval(long start, long end, boolean definite) {
+        this.start = start;
+        this.end = end;
+        this.definite = definite;
+    }
+
+    /**
+     * Getter for start
+     * @return First timestamp (inclusive)
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Getter for end
+     * @return Last timestamp (inclusive)
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Whether the original values definitely match, i.e. the whole ±epsilon band around the
+     * reconstruction lies inside the predicate. Otherwise they only possibly match.
+     * @return True if definitely matching
+     */
+    public boolean isDefinite() {
+        return definite;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + "]" + (definite ? " definite" : " possible");
+    }
+}
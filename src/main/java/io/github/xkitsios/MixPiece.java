@@ -5,19 +5,54 @@ import com.github.luben.zstd.Zstd;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.*;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Mix-Piece Algorithm for Compressing Time-Series Data
  */
 public class MixPiece {
-    private static ArrayList<MixPieceSegment> perBSegments;
-    private static ArrayList<MixPieceSegment> perASegments;
-    private static ArrayList<MixPieceSegment> restSegments;
+    private SegmentStore perBSegments;
+    private SegmentStore perASegments;
+    private SegmentStore restSegments;
 
-    private static double epsilon;
-    private static int globalMinB;
-    private static long lastTimeStamp;
+    private double epsilon;
+    private int globalMinB;
+    private long lastTimeStamp;
+    private boolean exact;
+
+    private MixPiece(long[] timestamps, double[] values, int from, int to, double error) {
+        epsilon = error;
+        lastTimeStamp = timestamps[to - 1];
+        merge(compress(timestamps, values, from, to));
+    }
+
+    private MixPiece(SegmentTable table, double error) {
+        epsilon = error;
+        lastTimeStamp = table.getLastTimeStamp();
+        merge(compress(table, error - table.getEpsilon()));
+    }
+
+    private MixPiece(SegmentTable table) {
+        epsilon = table.getEpsilon();
+        lastTimeStamp = table.getLastTimeStamp();
+        SegmentStore segments = new SegmentStore(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            segments.add(table.getInitTimestamp(i), table.getA(i), table.getB(i));
+            globalMinB = (int) Math.min(globalMinB, Math.round(table.getB(i) / epsilon));
+        }
+        merge(segments);
+    }
+
+    private MixPiece(ByteArrayInputStream inStream) throws IOException {
+        readByteArray(inStream);
+    }
 
     /**
      * Compress a list of Points and return a binary representation
@@ -27,71 +62,318 @@ public class MixPiece {
      * @throws Exception
      */
     public static byte[] compress(List<Point> points, double error) throws Exception {
-        if (points.isEmpty() || error <= 0) throw new Exception();
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        return compress(columns.getTimestamps(), columns.getValues(), error);
+    }
 
-        epsilon = error;
-        lastTimeStamp = points.get(points.size() - 1).getTimestamp();
-        merge(compress(points));
-        return toByteArray();
+    /**
+     * Compress time-series columns and return a binary representation, without allocating per point
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        if (timestamps.length == 0 || error <= 0) throw new Exception();
+
+        return new MixPiece(timestamps, values, 0, timestamps.length, error).toByteArray(Encoding.VARIABLE_BYTE);
+    }
+
+    /**
+     * Compress a list of Points and return a binary representation in the given layout
+     * @param points Time-series data
+     * @param error Maximum absolute error
+     * @param encoding Layout of the segments
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(List<Point> points, double error, Encoding encoding) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        return compress(columns.getTimestamps(), columns.getValues(), error, encoding);
+    }
+
+    /**
+     * Compress time-series columns and return a binary representation in the given layout
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @param encoding Layout of the segments
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error, Encoding encoding) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(timestamps, values, 0, timestamps.length, error, encoding, outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    /**
+     * Compress in verify mode: every original point is checked against the segment the decoder will use for it,
+     * with the slopes and starting values as serialized, in one pass and without decompressing
+     * @param points Time-series data
+     * @param error Maximum absolute error
+     * @param stats Accumulator of the errors, which may also fail compression on the first error above its tolerance
+     * @return Binary representation
+     * @throws ErrorBoundException If an error exceeds the tolerance of stats
+     * @throws Exception
+     */
+    public static byte[] compress(List<Point> points, double error, ErrorStats stats) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        return compress(columns.getTimestamps(), columns.getValues(), error, stats);
+    }
+
+    /**
+     * Compress in verify mode: every original point is checked against the segment the decoder will use for it,
+     * with the slopes and starting values as serialized, in one pass and without decompressing
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @param stats Accumulator of the errors, which may also fail compression on the first error above its tolerance
+     * @return Binary representation
+     * @throws ErrorBoundException If an error exceeds the tolerance of stats
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error, ErrorStats stats) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(timestamps, values, 0, timestamps.length, error, outStream);
+        byte[] body = outStream.toByteArray();
+        outStream.close();
+        verify(body, timestamps, values, 0, timestamps.length, error, stats);
+
+        return Zstd.compress(body);
     }
 
     /**
      * Decompress a binary representation and return a list of Points
      * @param binary Binary representation
      * @return Time-series data
+     * @throws IOException
+     */
+    public static List<Point> decompress(byte[] binary) throws IOException {
+        return readSegmentTable(binary).toPoints();
+    }
+
+    /**
+     * Number of points a binary representation decompresses to
+     * @param binary Binary representation
+     * @return Number of points
+     * @throws IOException
+     */
+    public static int decompressedSize(byte[] binary) throws IOException {
+        return readSegmentTable(binary).getNumPoints();
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided arrays, without allocating per point
+     * @param binary Binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary) points
+     * @param values Output values, with room for decompressedSize(binary) points
+     * @return Number of points written
+     * @throws IOException
+     */
+    public static int decompressInto(byte[] binary, long[] timestamps, double[] values) throws IOException {
+        return readSegmentTable(binary).toArrays(timestamps, values);
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided arrays in parallel. The sections of the binary
+     * representation are parsed in order, then the time-sorted runs of segments are merged and disjoint ranges of
+     * segments are evaluated as tasks of pool.
+     * @param binary Binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary) points
+     * @param values Output values, with room for decompressedSize(binary) points
+     * @param pool Pool running the merge and evaluation tasks
+     * @return Number of points written
+     * @throws IOException
+     */
+    public static int decompressInto(byte[] binary, long[] timestamps, double[] values, ForkJoinPool pool) throws IOException {
+        return readByteArray(binary).toSegmentTable(pool).toArrays(timestamps, values, pool);
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided buffers, starting at their current positions
+     * @param binary Binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary) points
+     * @param values Output values, with room for decompressedSize(binary) points
+     * @return Number of points written
+     * @throws IOException
+     */
+    public static int decompressInto(byte[] binary, LongBuffer timestamps, DoubleBuffer values) throws IOException {
+        return readSegmentTable(binary).toBuffers(timestamps, values);
+    }
+
+    /**
+     * Compress an already compressed time series again with a coarser maximum absolute error, working on its
+     * segments instead of its points. The result stays within error of the original data: it is within
+     * (error - previous error) of the previous reconstruction, which is within the previous error of the data.
+     * The result keeps the layout of binary. In the VARIABLE_BYTE layout slopes and starting values are stored as
+     * floats, so both bounds may be exceeded by their rounding, below a millionth of the magnitude of the values. The
+     * error recorded in the result is the new one, so rollups can be chained.
+     * @param binary Binary representation
+     * @param error New maximum absolute error, at least twice the one binary was compressed with
+     * @return Binary representation
+     * @throws IOException
+     */
+    public static byte[] recompress(byte[] binary, double error) throws IOException {
+        SegmentTable table = readSegmentTable(binary);
+        if (!(error >= 2 * table.getEpsilon()))
+            throw new IllegalArgumentException("New error " + error + " must be at least twice the previous error " + table.getEpsilon());
+
+        return new MixPiece(table, error).toByteArray(encoding(table));
+    }
+
+    /**
+     * Compact binary representations of consecutive parts of one time series into a single one, merging their
+     * segments globally. Only segments are decoded and the result decompresses to the concatenated parts, in their
+     * layout.
+     * @param binaries Binary representations with the same error and layout, whose time ranges follow each other in
+     * any order
+     * @return Binary representation
+     * @throws IOException
+     */
+    public static byte[] compact(List<byte[]> binaries) throws IOException {
+        List<SegmentTable> tables = new ArrayList<>(binaries.size());
+        for (byte[] binary : binaries) tables.add(readSegmentTable(binary));
+
+        SegmentTable table = SegmentTable.concatenate(tables);
+        return new MixPiece(table).toByteArray(encoding(table));
+    }
+
+    /**
+     * Compact the parts of several time series in parallel
+     * @param series Binary representations of the parts of each time series
+     * @return Binary representation of each time series
+     * @throws IOException
+     */
+    public static List<byte[]> compactAll(List<List<byte[]>> series) throws IOException {
+        byte[][] binaries = new byte[series.size()][];
+        try {
+            IntStream.range(0, series.size()).parallel().forEach(s -> {
+                try {
+                    binaries[s] = compact(series.get(s));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return Arrays.asList(binaries);
+    }
+
+    static void compress(List<Point> points, double error, ByteArrayOutputStream outStream) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        compress(columns.getTimestamps(), columns.getValues(), 0, columns.size(), error, outStream);
+    }
+
+    static void compress(long[] timestamps, double[] values, int from, int to, double error, ByteArrayOutputStream outStream) throws Exception {
+        compress(timestamps, values, from, to, error, Encoding.VARIABLE_BYTE, outStream);
+    }
+
+    static void compress(long[] timestamps, double[] values, int from, int to, double error, Encoding encoding, ByteArrayOutputStream outStream) throws Exception {
+        if (from >= to || error <= 0) throw new Exception();
+
+        new MixPiece(timestamps, values, from, to, error).toByteArray(encoding, outStream);
+    }
+
+    static void verify(byte[] body, long[] timestamps, double[] values, int from, int to, double error, ErrorStats stats) throws IOException, ErrorBoundException {
+        new MixPiece(new ByteArrayInputStream(body)).toSegmentTable().verify(timestamps, values, from, to, error, stats);
+    }
+
+    static List<Point> decompress(ByteArrayInputStream inStream) throws IOException {
+        return new MixPiece(inStream).toSegmentTable().toPoints();
+    }
+
+    /**
+     * Find the time ranges where the original values satisfy a predicate, without decompressing points
+     * @param binary Binary representation
+     * @param predicate Value range to search for
+     * @return Disjoint intervals in time order, each either definitely or possibly matching
+     * @throws IOException
      */
-    public static List<Point> decompress(byte[] binary) {
-        readByteArray(binary);
-        return toPoints();
+    public static List<Interval> findIntervals(byte[] binary, ValuePredicate predicate) throws IOException {
+        return readSegmentTable(binary).findIntervals(predicate);
+    }
+
+    static SegmentTable readSegmentTable(byte[] binary) throws IOException {
+        return readByteArray(binary).toSegmentTable();
+    }
+
+    private SegmentTable toSegmentTable(ForkJoinPool pool) {
+        return concatenate().toSegmentTable(lastTimeStamp, epsilon, exact, pool);
+    }
+
+    private SegmentTable toSegmentTable() {
+        return concatenate().toSegmentTable(lastTimeStamp, epsilon, exact);
     }
 
-    private static double quantization(double value, int mode) {
+    private SegmentStore concatenate() {
+        SegmentStore segments = new SegmentStore(perBSegments.size() + perASegments.size() + restSegments.size());
+        segments.addAll(perBSegments);
+        segments.addAll(perASegments);
+        segments.addAll(restSegments);
+
+        return segments;
+    }
+
+    private double quantization(double value, int mode) {
         if (mode == 1) return (int) Math.ceil(value / epsilon) * epsilon;
         else if (mode == 2) return (int) Math.floor(value / epsilon) * epsilon;
         else return Math.round(value / epsilon) * epsilon;
     }
 
-    private static int createSegment(int startIdx, List<Point> points, ArrayList<MixPieceSegment> segments, int quantizationMode) {
-        long initTimestamp = points.get(startIdx).getTimestamp();
-        double b = quantization(points.get(startIdx).getValue(), quantizationMode);
-        if (startIdx + 1 == points.size()) {
-            segments.add(new MixPieceSegment(initTimestamp, -Double.MAX_VALUE, Double.MAX_VALUE, b));
+    private int createSegment(int startIdx, int endIdx, long[] timestamps, double[] values, SegmentStore segments, int quantizationMode) {
+        long initTimestamp = timestamps[startIdx];
+        double b = quantization(values[startIdx], quantizationMode);
+        if (startIdx + 1 == endIdx) {
+            segments.add(initTimestamp, -Double.MAX_VALUE, Double.MAX_VALUE, b);
             return startIdx + 1;
         }
-        double aMax = ((points.get(startIdx + 1).getValue() + epsilon) - b) / (points.get(startIdx + 1).getTimestamp() - initTimestamp);
-        double aMin = ((points.get(startIdx + 1).getValue() - epsilon) - b) / (points.get(startIdx + 1).getTimestamp() - initTimestamp);
-        if (startIdx + 2 == points.size()) {
-            segments.add(new MixPieceSegment(initTimestamp, aMin, aMax, b));
+        double aMax = ((values[startIdx + 1] + epsilon) - b) / (timestamps[startIdx + 1] - initTimestamp);
+        double aMin = ((values[startIdx + 1] - epsilon) - b) / (timestamps[startIdx + 1] - initTimestamp);
+        if (startIdx + 2 == endIdx) {
+            segments.add(initTimestamp, aMin, aMax, b);
             return startIdx + 2;
         }
 
-        for (int idx = startIdx + 2; idx < points.size(); idx++) {
-            double upValue = points.get(idx).getValue() + epsilon;
-            double downValue = points.get(idx).getValue() - epsilon;
+        for (int idx = startIdx + 2; idx < endIdx; idx++) {
+            double upValue = values[idx] + epsilon;
+            double downValue = values[idx] - epsilon;
 
-            double upLim = aMax * (points.get(idx).getTimestamp() - initTimestamp) + b;
-            double downLim = aMin * (points.get(idx).getTimestamp() - initTimestamp) + b;
+            double upLim = aMax * (timestamps[idx] - initTimestamp) + b;
+            double downLim = aMin * (timestamps[idx] - initTimestamp) + b;
             if ((downValue > upLim || upValue < downLim)) {
-                segments.add(new MixPieceSegment(initTimestamp, aMin, aMax, b));
+                segments.add(initTimestamp, aMin, aMax, b);
                 return idx;
             }
 
             if (upValue < upLim)
-                aMax = Math.max((upValue - b) / (points.get(idx).getTimestamp() - initTimestamp), aMin);
+                aMax = Math.max((upValue - b) / (timestamps[idx] - initTimestamp), aMin);
             if (downValue > downLim)
-                aMin = Math.min((downValue - b) / (points.get(idx).getTimestamp() - initTimestamp), aMax);
+                aMin = Math.min((downValue - b) / (timestamps[idx] - initTimestamp), aMax);
         }
-        segments.add(new MixPieceSegment(initTimestamp, aMin, aMax, b));
+        segments.add(initTimestamp, aMin, aMax, b);
 
-        return points.size();
+        return endIdx;
     }
 
-    private static ArrayList<MixPieceSegment> compress(List<Point> points) {
-        ArrayList<MixPieceSegment> segments = new ArrayList<>();
-        int currentIdx = 0;
-        while (currentIdx < points.size()) {
-            int currentCeilIdx = createSegment(currentIdx, points, segments, 1);
-            int currentFloorIdx = createSegment(currentIdx, points, segments, 2);
+    private SegmentStore compress(long[] timestamps, double[] values, int from, int to) {
+        SegmentStore segments = new SegmentStore();
+        int currentIdx = from;
+        while (currentIdx < to) {
+            int currentCeilIdx = createSegment(currentIdx, to, timestamps, values, segments, 1);
+            int currentFloorIdx = createSegment(currentIdx, to, timestamps, values, segments, 2);
             if (currentCeilIdx > currentFloorIdx) {
                 segments.remove(segments.size() - 1);
                 currentIdx = currentCeilIdx;
@@ -99,236 +381,437 @@ public class MixPiece {
                 segments.remove(segments.size() - 2);
                 currentIdx = currentFloorIdx;
             } else {
-                double firstValue = points.get(currentIdx).getValue();
+                double firstValue = values[currentIdx];
                 if (Math.round(firstValue / epsilon) == Math.ceil(firstValue / epsilon))
                     segments.remove(segments.size() - 1);
                 else segments.remove(segments.size() - 2);
                 currentIdx = currentFloorIdx;
             }
-            globalMinB = (int) Math.min(globalMinB, segments.get(segments.size() - 1).getB() / epsilon);
+            globalMinB = (int) Math.min(globalMinB, segments.getB(segments.size() - 1) / epsilon);
         }
 
         return segments;
     }
 
-    private static void mergePerB(ArrayList<MixPieceSegment> segments, ArrayList<MixPieceSegment> mergedSegments, ArrayList<MixPieceSegment> unmergedSegments) {
-        double aMinTemp = -Double.MAX_VALUE;
-        double aMaxTemp = Double.MAX_VALUE;
-        double b = Double.NaN;
-        ArrayList<Long> timestamps = new ArrayList<>();
+    // Like createSegment over points, constraining the first and last timestamp of each segment of table. New segments
+    // only end where a segment of table ends, so in between both reconstructions are linear and stay within tolerance
+    private int createSegment(int startIdx, SegmentTable table, SegmentStore segments, double tolerance, double b) {
+        long initTimestamp = table.getInitTimestamp(startIdx);
+        double aMin = -Double.MAX_VALUE;
+        double aMax = Double.MAX_VALUE;
+
+        for (int idx = startIdx; idx < table.size(); idx++) {
+            long[] timestamps = {table.getInitTimestamp(idx), table.getEndTimestamp(idx)};
+            if (timestamps[1] < timestamps[0]) continue;
+            double aMinTemp = aMin;
+            double aMaxTemp = aMax;
+            for (long timestamp : timestamps) {
+                if (timestamp == initTimestamp) continue;
+                double value = table.value(idx, timestamp);
+                aMaxTemp = Math.min(aMaxTemp, (value + tolerance - b) / (timestamp - initTimestamp));
+                aMinTemp = Math.max(aMinTemp, (value - tolerance - b) / (timestamp - initTimestamp));
+            }
+            if (aMinTemp > aMaxTemp) {
+                segments.add(initTimestamp, aMin, aMax, b);
+                return idx;
+            }
+            aMin = aMinTemp;
+            aMax = aMaxTemp;
+        }
+        segments.add(initTimestamp, aMin, aMax, b);
 
-        segments.sort(Comparator.comparingDouble(MixPieceSegment::getB).thenComparingDouble(MixPieceSegment::getA));
-        for (int i = 0; i < segments.size(); i++) {
-            if (b != segments.get(i).getB()) {
-                if (timestamps.size() == 1)
-                    unmergedSegments.add(new MixPieceSegment(timestamps.get(0), aMinTemp, aMaxTemp, b));
-                else {
-                    for (Long timestamp : timestamps)
-                        mergedSegments.add(new MixPieceSegment(timestamp, aMinTemp, aMaxTemp, b));
-                }
-                timestamps.clear();
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = segments.get(i).getAMin();
-                aMaxTemp = segments.get(i).getAMax();
-                b = segments.get(i).getB();
+        return table.size();
+    }
+
+    // Ceil and floor quantization are only used when within tolerance of the starting value; the nearest always is
+    private SegmentStore compress(SegmentTable table, double tolerance) {
+        SegmentStore segments = new SegmentStore();
+        int currentIdx = 0;
+        while (currentIdx < table.size()) {
+            if (table.getEndTimestamp(currentIdx) < table.getInitTimestamp(currentIdx)) {
+                currentIdx++;
                 continue;
             }
-            if (segments.get(i).getAMin() <= aMaxTemp && segments.get(i).getAMax() >= aMinTemp) {
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = Math.max(aMinTemp, segments.get(i).getAMin());
-                aMaxTemp = Math.min(aMaxTemp, segments.get(i).getAMax());
+            double firstValue = table.getB(currentIdx);
+            double ceilB = quantization(firstValue, 1);
+            double floorB = quantization(firstValue, 2);
+            boolean ceilNearest = ceilB - firstValue <= firstValue - floorB;
+            if (ceilNearest && firstValue - floorB > tolerance) {
+                currentIdx = createSegment(currentIdx, table, segments, tolerance, ceilB);
+            } else if (!ceilNearest && ceilB - firstValue > tolerance) {
+                currentIdx = createSegment(currentIdx, table, segments, tolerance, floorB);
             } else {
-                if (timestamps.size() == 1) unmergedSegments.add(segments.get(i - 1));
-                else {
-                    for (long timestamp : timestamps)
-                        mergedSegments.add(new MixPieceSegment(timestamp, aMinTemp, aMaxTemp, b));
+                int currentCeilIdx = createSegment(currentIdx, table, segments, tolerance, ceilB);
+                int currentFloorIdx = createSegment(currentIdx, table, segments, tolerance, floorB);
+                if (currentCeilIdx > currentFloorIdx || (currentCeilIdx == currentFloorIdx && ceilNearest)) {
+                    segments.remove(segments.size() - 1);
+                    currentIdx = currentCeilIdx;
+                } else {
+                    segments.remove(segments.size() - 2);
+                    currentIdx = currentFloorIdx;
                 }
-                timestamps.clear();
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = segments.get(i).getAMin();
-                aMaxTemp = segments.get(i).getAMax();
             }
+            globalMinB = (int) Math.min(globalMinB, segments.getB(segments.size() - 1) / epsilon);
         }
-        if (!timestamps.isEmpty()) {
-            if (timestamps.size() == 1)
-                unmergedSegments.add(new MixPieceSegment(timestamps.get(0), aMinTemp, aMaxTemp, b));
-            else {
-                for (long timestamp : timestamps)
-                    mergedSegments.add(new MixPieceSegment(timestamp, aMinTemp, aMaxTemp, b));
-            }
+
+        return segments;
+    }
+
+    // Keeps a merged group at position size of segments, or moves a single segment to unmergedSegments
+    private static int addGroup(SegmentStore segments, int from, int to, double aMin, double aMax, int size, SegmentStore unmergedSegments) {
+        if (to - from == 1) {
+            unmergedSegments.add(segments.getInitTimestamp(from), aMin, aMax, segments.getB(from));
+            return size;
         }
+        for (int j = from; j < to; j++) segments.set(size++, segments.getInitTimestamp(j), aMin, aMax, segments.getB(j));
+        return size;
     }
 
-    private static void mergeAll(ArrayList<MixPieceSegment> segments, ArrayList<MixPieceSegment> mergedSegments, ArrayList<MixPieceSegment> unmergedSegments) {
+    private static void mergePerB(SegmentStore segments, SegmentStore unmergedSegments) {
         double aMinTemp = -Double.MAX_VALUE;
         double aMaxTemp = Double.MAX_VALUE;
-        ArrayList<Double> bValues = new ArrayList<>();
-        ArrayList<Long> timestamps = new ArrayList<>();
+        double b = Double.NaN;
+        int groupStart = 0;
+        int size = 0;
 
-        segments.sort(Comparator.comparingDouble(MixPieceSegment::getAMin));
+        segments.sort((i, j) -> {
+            int compare = Double.compare(segments.getB(i), segments.getB(j));
+            return compare != 0 ? compare : Double.compare(segments.getA(i), segments.getA(j));
+        });
         for (int i = 0; i < segments.size(); i++) {
-            if (segments.get(i).getAMin() <= aMaxTemp && segments.get(i).getAMax() >= aMinTemp) {
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = Math.max(aMinTemp, segments.get(i).getAMin());
-                aMaxTemp = Math.min(aMaxTemp, segments.get(i).getAMax());
-                bValues.add(segments.get(i).getB());
-            } else {
-                if (timestamps.size() == 1) unmergedSegments.add(segments.get(i - 1));
-                else {
-                    for (int j = 0; j < timestamps.size(); j++)
-                        mergedSegments.add(new MixPieceSegment(timestamps.get(j), aMinTemp, aMaxTemp, bValues.get(j)));
-                }
-                timestamps.clear();
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = segments.get(i).getAMin();
-                aMaxTemp = segments.get(i).getAMax();
-                bValues.clear();
-                bValues.add(segments.get(i).getB());
+            if (b != segments.getB(i)) {
+                size = addGroup(segments, groupStart, i, aMinTemp, aMaxTemp, size, unmergedSegments);
+                groupStart = i;
+                aMinTemp = segments.getAMin(i);
+                aMaxTemp = segments.getAMax(i);
+                b = segments.getB(i);
+                continue;
             }
-        }
-        if (!timestamps.isEmpty()) {
-            if (timestamps.size() == 1)
-                unmergedSegments.add(new MixPieceSegment(timestamps.get(0), aMinTemp, aMaxTemp, bValues.get(0)));
-            else {
-                for (int i = 0; i < timestamps.size(); i++)
-                    mergedSegments.add(new MixPieceSegment(timestamps.get(i), aMinTemp, aMaxTemp, bValues.get(i)));
+            if (segments.getAMin(i) <= aMaxTemp && segments.getAMax(i) >= aMinTemp) {
+                aMinTemp = Math.max(aMinTemp, segments.getAMin(i));
+                aMaxTemp = Math.min(aMaxTemp, segments.getAMax(i));
+            } else {
+                size = addGroup(segments, groupStart, i, aMinTemp, aMaxTemp, size, unmergedSegments);
+                groupStart = i;
+                aMinTemp = segments.getAMin(i);
+                aMaxTemp = segments.getAMax(i);
             }
         }
+        size = addGroup(segments, groupStart, segments.size(), aMinTemp, aMaxTemp, size, unmergedSegments);
+        segments.truncate(size);
     }
 
-    private static void merge(ArrayList<MixPieceSegment> segments) {
-        perBSegments = new ArrayList<>();
-        perASegments = new ArrayList<>();
-        restSegments = new ArrayList<>();
-        ArrayList<MixPieceSegment> temp = new ArrayList<>();
+    private static void mergeAll(SegmentStore segments, SegmentStore unmergedSegments) {
+        double aMinTemp = -Double.MAX_VALUE;
+        double aMaxTemp = Double.MAX_VALUE;
+        int groupStart = 0;
+        int size = 0;
 
-        mergePerB(segments, perBSegments, temp);
-        if (!temp.isEmpty()) {
-            mergeAll(temp, perASegments, restSegments);
+        segments.sort((i, j) -> Double.compare(segments.getAMin(i), segments.getAMin(j)));
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.getAMin(i) <= aMaxTemp && segments.getAMax(i) >= aMinTemp) {
+                aMinTemp = Math.max(aMinTemp, segments.getAMin(i));
+                aMaxTemp = Math.min(aMaxTemp, segments.getAMax(i));
+            } else {
+                size = addGroup(segments, groupStart, i, aMinTemp, aMaxTemp, size, unmergedSegments);
+                groupStart = i;
+                aMinTemp = segments.getAMin(i);
+                aMaxTemp = segments.getAMax(i);
+            }
         }
+        size = addGroup(segments, groupStart, segments.size(), aMinTemp, aMaxTemp, size, unmergedSegments);
+        segments.truncate(size);
     }
 
-    private static List<Point> toPoints() {
-        ArrayList<MixPieceSegment> segments = new ArrayList<>();
-        segments.addAll(perBSegments);
-        segments.addAll(perASegments);
-        segments.addAll(restSegments);
-        segments.sort(Comparator.comparingLong(MixPieceSegment::getInitTimestamp));
-        List<Point> points = new ArrayList<>();
-        long currentTimeStamp = segments.get(0).getInitTimestamp();
-
+    private void merge(SegmentStore segments) {
+        perBSegments = segments;
+        perASegments = new SegmentStore();
+        restSegments = new SegmentStore();
 
-        for (int i = 0; i < segments.size() - 1; i++) {
-            while (currentTimeStamp < segments.get(i + 1).getInitTimestamp()) {
-                points.add(new Point(currentTimeStamp, segments.get(i).getA() * (currentTimeStamp - segments.get(i).getInitTimestamp()) + segments.get(i).getB()));
-                currentTimeStamp++;
-            }
-        }
-
-        while (currentTimeStamp <= lastTimeStamp) {
-            points.add(new Point(currentTimeStamp, segments.get(segments.size() - 1).getA() * (currentTimeStamp - segments.get(segments.size() - 1).getInitTimestamp()) + segments.get(segments.size() - 1).getB()));
-            currentTimeStamp++;
+        mergePerB(perBSegments, perASegments);
+        if (!perASegments.isEmpty()) {
+            mergeAll(perASegments, restSegments);
         }
+    }
 
-        return points;
+    private int bKey(SegmentStore segments, int i) {
+        return (int) Math.round(segments.getB(i) / epsilon) - globalMinB;
     }
 
-    private static void toByteArrayPerBSegments(ArrayList<MixPieceSegment> segments, ByteArrayOutputStream outStream) throws IOException {
-        TreeMap<Integer, HashMap<Double, ArrayList<Long>>> input = new TreeMap<>();
-        for (MixPieceSegment segment : segments) {
-            double a = segment.getA();
-            int b = (int) Math.round(segment.getB() / epsilon);
-            long t = segment.getInitTimestamp();
-            if (!input.containsKey(b)) input.put(b, new HashMap<>());
-            if (!input.get(b).containsKey(a)) input.get(b).put(a, new ArrayList<>());
-            input.get(b).get(a).add(t);
-        }
+    private void toByteArrayPerBSegments(SegmentStore segments, ByteArrayOutputStream outStream) throws IOException {
+        segments.sort((i, j) -> {
+            int compare = Integer.compare(bKey(segments, i), bKey(segments, j));
+            if (compare == 0) compare = Double.compare(segments.getA(i), segments.getA(j));
+            return compare != 0 ? compare : Long.compare(segments.getInitTimestamp(i), segments.getInitTimestamp(j));
+        });
 
-        VariableByteEncoder.write(input.size(), outStream);
-        if (input.isEmpty())
+        int numB = 0;
+        for (int i = 0; i < segments.size(); i++)
+            if (i == 0 || bKey(segments, i) != bKey(segments, i - 1)) numB++;
+
+        VariableByteEncoder.write(numB, outStream);
+        if (numB == 0)
             return;
-        int previousB = input.firstKey() - globalMinB;
+        int previousB = bKey(segments, 0);
         VariableByteEncoder.write(previousB, outStream);
-        for (Map.Entry<Integer, HashMap<Double, ArrayList<Long>>> bSegments : input.entrySet()) {
-            VariableByteEncoder.write(bSegments.getKey() - globalMinB - previousB, outStream);
-            previousB = bSegments.getKey() - globalMinB;
-            VariableByteEncoder.write(bSegments.getValue().size(), outStream);
-            for (Map.Entry<Double, ArrayList<Long>> aSegment : bSegments.getValue().entrySet()) {
-                FloatEncoder.write(aSegment.getKey().floatValue(), outStream);
-                Collections.sort(aSegment.getValue());
-                VariableByteEncoder.write(aSegment.getValue().size(), outStream);
+        int bStart = 0;
+        while (bStart < segments.size()) {
+            int b = bKey(segments, bStart);
+            int bEnd = bStart;
+            int numA = 0;
+            while (bEnd < segments.size() && bKey(segments, bEnd) == b) {
+                if (bEnd == bStart || Double.compare(segments.getA(bEnd), segments.getA(bEnd - 1)) != 0) numA++;
+                bEnd++;
+            }
+            VariableByteEncoder.write(b - previousB, outStream);
+            previousB = b;
+            VariableByteEncoder.write(numA, outStream);
+
+            int aStart = bStart;
+            while (aStart < bEnd) {
+                int aEnd = aStart + 1;
+                while (aEnd < bEnd && Double.compare(segments.getA(aEnd), segments.getA(aStart)) == 0) aEnd++;
+                FloatEncoder.write((float) segments.getA(aStart), outStream);
+                VariableByteEncoder.write(aEnd - aStart, outStream);
                 long previousTS = 0;
-                for (Long timestamp : aSegment.getValue()) {
-                    VariableByteEncoder.write((int) (timestamp - previousTS), outStream);
-                    previousTS = timestamp;
+                for (int i = aStart; i < aEnd; i++) {
+                    VariableByteEncoder.write((int) (segments.getInitTimestamp(i) - previousTS), outStream);
+                    previousTS = segments.getInitTimestamp(i);
                 }
+                aStart = aEnd;
             }
+            bStart = bEnd;
         }
     }
 
-    private static void toByteArrayPerASegments(ArrayList<MixPieceSegment> segments, ByteArrayOutputStream outStream) throws IOException {
-        TreeMap<Double, ArrayList<MixPieceSegment>> input = new TreeMap<>();
-        for (MixPieceSegment segment : segments) {
-            if (!input.containsKey(segment.getA())) input.put(segment.getA(), new ArrayList<>());
-            input.get(segment.getA()).add(segment);
-        }
-
-        VariableByteEncoder.write(input.size(), outStream);
-        for (Map.Entry<Double, ArrayList<MixPieceSegment>> aSegments : input.entrySet()) {
-            FloatEncoder.write(aSegments.getKey().floatValue(), outStream);
-            VariableByteEncoder.write(aSegments.getValue().size(), outStream);
-            aSegments.getValue().sort(Comparator.comparingDouble(MixPieceSegment::getB));
-            int previousB = (int) Math.round(aSegments.getValue().get(0).getB() / epsilon) - globalMinB;
+    private void toByteArrayPerASegments(SegmentStore segments, ByteArrayOutputStream outStream) throws IOException {
+        segments.sort((i, j) -> {
+            int compare = Double.compare(segments.getA(i), segments.getA(j));
+            return compare != 0 ? compare : Double.compare(segments.getB(i), segments.getB(j));
+        });
+
+        int numA = 0;
+        for (int i = 0; i < segments.size(); i++)
+            if (i == 0 || Double.compare(segments.getA(i), segments.getA(i - 1)) != 0) numA++;
+
+        VariableByteEncoder.write(numA, outStream);
+        int aStart = 0;
+        while (aStart < segments.size()) {
+            int aEnd = aStart + 1;
+            while (aEnd < segments.size() && Double.compare(segments.getA(aEnd), segments.getA(aStart)) == 0) aEnd++;
+            FloatEncoder.write((float) segments.getA(aStart), outStream);
+            VariableByteEncoder.write(aEnd - aStart, outStream);
+            int previousB = bKey(segments, aStart);
             VariableByteEncoder.write(previousB, outStream);
-            for (MixPieceSegment segment : aSegments.getValue()) {
-                VariableByteEncoder.write((int) (Math.round(segment.getB() / epsilon) - globalMinB - previousB), outStream);
-                previousB = (int) Math.round(segment.getB() / epsilon) - globalMinB;
-                UIntEncoder.write(segment.getInitTimestamp(), outStream);
+            for (int i = aStart; i < aEnd; i++) {
+                VariableByteEncoder.write(bKey(segments, i) - previousB, outStream);
+                previousB = bKey(segments, i);
+                UIntEncoder.write(segments.getInitTimestamp(i), outStream);
             }
+            aStart = aEnd;
         }
     }
 
-    private static void toByteArrayRestSegments(ArrayList<MixPieceSegment> segments, ByteArrayOutputStream outStream) throws IOException {
+    private void toByteArrayRestSegments(SegmentStore segments, ByteArrayOutputStream outStream) throws IOException {
         VariableByteEncoder.write(segments.size(), outStream);
         if (segments.isEmpty())
             return;
-        segments.sort(Comparator.comparingDouble(MixPieceSegment::getB));
-        int previousB = (int) Math.round(segments.get(0).getB() / epsilon) - globalMinB;
+        segments.sort((i, j) -> Double.compare(segments.getB(i), segments.getB(j)));
+        int previousB = bKey(segments, 0);
         VariableByteEncoder.write(previousB, outStream);
-        for (MixPieceSegment segment : segments) {
-            VariableByteEncoder.write((int) (Math.round(segment.getB() / epsilon) - globalMinB - previousB), outStream);
-            previousB = (int) Math.round(segment.getB() / epsilon) - globalMinB;
-            FloatEncoder.write((float) segment.getA(), outStream);
-            UIntEncoder.write(segment.getInitTimestamp(), outStream);
+        for (int i = 0; i < segments.size(); i++) {
+            VariableByteEncoder.write(bKey(segments, i) - previousB, outStream);
+            previousB = bKey(segments, i);
+            FloatEncoder.write((float) segments.getA(i), outStream);
+            UIntEncoder.write(segments.getInitTimestamp(i), outStream);
         }
     }
 
-    private static byte[] toByteArray() {
+    // Tables read back from either layout are exact only if they were BIT_PACKED, which rewrites keep
+    private static Encoding encoding(SegmentTable table) {
+        return table.isExact() ? Encoding.BIT_PACKED : Encoding.VARIABLE_BYTE;
+    }
+
+    private byte[] toByteArray(Encoding encoding) throws IOException {
         ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        byte[] bytes = null;
+        toByteArray(encoding, outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
 
-        try {
-            FloatEncoder.write((float) epsilon, outStream);
-            VariableByteEncoder.write(globalMinB, outStream);
+        return bytes;
+    }
 
-            toByteArrayPerBSegments(perBSegments, outStream);
-            toByteArrayPerASegments(perASegments, outStream);
-            toByteArrayRestSegments(restSegments, outStream);
+    private void toByteArray(Encoding encoding, ByteArrayOutputStream outStream) throws IOException {
+        if (encoding == Encoding.BIT_PACKED) toPackedByteArray(outStream);
+        else toByteArray(outStream);
+    }
 
-            VariableByteEncoder.write((int) lastTimeStamp, outStream);
+    private void toByteArray(ByteArrayOutputStream outStream) throws IOException {
+        FloatEncoder.write((float) epsilon, outStream);
+        VariableByteEncoder.write(globalMinB, outStream);
 
-            bytes = Zstd.compress(outStream.toByteArray());
+        toByteArrayPerBSegments(perBSegments, outStream);
+        toByteArrayPerASegments(perASegments, outStream);
+        toByteArrayRestSegments(restSegments, outStream);
 
-            outStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        VariableByteEncoder.write((int) lastTimeStamp, outStream);
+    }
+
+    // Same sections as toByteArray, with the integers of all sections in shared bit-packed columns and exact slopes
+    // and starting values. A negative leading epsilon marks the layout for readByteArray
+    private void toPackedByteArray(ByteArrayOutputStream outStream) throws IOException {
+        FloatEncoder.write((float) -epsilon, outStream);
+        LongEncoder.write(Double.doubleToLongBits(epsilon), outStream);
+        LongEncoder.write(lastTimeStamp, outStream);
+
+        PackedLongs counts = new PackedLongs();
+        PackedLongs bs = new PackedLongs();
+        PackedLongs exponents = new PackedLongs();
+        PackedLongs mantissas = new PackedLongs();
+        PackedLongs deltas = new PackedLongs();
+        PackedLongs timestamps = new PackedLongs();
+        for (SegmentStore segments : Arrays.asList(perBSegments, perASegments, restSegments)) {
+            for (int i = 0; i < segments.size(); i++) {
+                double a = SlopeEncoder.quantize(segments.getAMin(i), segments.getAMax(i));
+                segments.set(i, segments.getInitTimestamp(i), a, a, segments.getB(i));
+            }
         }
 
-        return bytes;
+        perBSegments.sort((i, j) -> {
+            int compare = Long.compare(packedBKey(perBSegments, i), packedBKey(perBSegments, j));
+            if (compare == 0) compare = Double.compare(perBSegments.getA(i), perBSegments.getA(j));
+            return compare != 0 ? compare : Long.compare(perBSegments.getInitTimestamp(i), perBSegments.getInitTimestamp(j));
+        });
+        int numB = 0;
+        for (int i = 0; i < perBSegments.size(); i++)
+            if (i == 0 || packedBKey(perBSegments, i) != packedBKey(perBSegments, i - 1)) numB++;
+        counts.add(numB);
+        long previousB = 0;
+        int bStart = 0;
+        while (bStart < perBSegments.size()) {
+            long b = packedBKey(perBSegments, bStart);
+            int bEnd = bStart;
+            int numA = 0;
+            while (bEnd < perBSegments.size() && packedBKey(perBSegments, bEnd) == b) {
+                if (bEnd == bStart || Double.compare(perBSegments.getA(bEnd), perBSegments.getA(bEnd - 1)) != 0) numA++;
+                bEnd++;
+            }
+            bs.addSigned(b - previousB);
+            previousB = b;
+            counts.add(numA);
+
+            int aStart = bStart;
+            while (aStart < bEnd) {
+                int aEnd = aStart + 1;
+                while (aEnd < bEnd && Double.compare(perBSegments.getA(aEnd), perBSegments.getA(aStart)) == 0) aEnd++;
+                SlopeEncoder.write(perBSegments.getA(aStart), exponents, mantissas);
+                counts.add(aEnd - aStart);
+                long previousTS = 0;
+                for (int i = aStart; i < aEnd; i++) {
+                    deltas.add(perBSegments.getInitTimestamp(i) - previousTS);
+                    previousTS = perBSegments.getInitTimestamp(i);
+                }
+                aStart = aEnd;
+            }
+            bStart = bEnd;
+        }
+
+        perASegments.sort((i, j) -> {
+            int compare = Double.compare(perASegments.getA(i), perASegments.getA(j));
+            return compare != 0 ? compare : Double.compare(perASegments.getB(i), perASegments.getB(j));
+        });
+        int numA = 0;
+        for (int i = 0; i < perASegments.size(); i++)
+            if (i == 0 || Double.compare(perASegments.getA(i), perASegments.getA(i - 1)) != 0) numA++;
+        counts.add(numA);
+        int aStart = 0;
+        while (aStart < perASegments.size()) {
+            int aEnd = aStart + 1;
+            while (aEnd < perASegments.size() && Double.compare(perASegments.getA(aEnd), perASegments.getA(aStart)) == 0) aEnd++;
+            SlopeEncoder.write(perASegments.getA(aStart), exponents, mantissas);
+            counts.add(aEnd - aStart);
+            previousB = 0;
+            for (int i = aStart; i < aEnd; i++) {
+                bs.addSigned(packedBKey(perASegments, i) - previousB);
+                previousB = packedBKey(perASegments, i);
+                timestamps.add(perASegments.getInitTimestamp(i));
+            }
+            aStart = aEnd;
+        }
+
+        restSegments.sort((i, j) -> Double.compare(restSegments.getB(i), restSegments.getB(j)));
+        counts.add(restSegments.size());
+        previousB = 0;
+        for (int i = 0; i < restSegments.size(); i++) {
+            bs.addSigned(packedBKey(restSegments, i) - previousB);
+            previousB = packedBKey(restSegments, i);
+            SlopeEncoder.write(restSegments.getA(i), exponents, mantissas);
+            timestamps.add(restSegments.getInitTimestamp(i));
+        }
+
+        counts.write(outStream);
+        bs.write(outStream);
+        exponents.write(outStream);
+        mantissas.write(outStream);
+        deltas.write(outStream);
+        timestamps.write(outStream);
+    }
+
+    private long packedBKey(SegmentStore segments, int i) {
+        return Math.round(segments.getB(i) / epsilon);
+    }
+
+    private void readPackedByteArray(ByteArrayInputStream inStream) throws IOException {
+        exact = true;
+        epsilon = Double.longBitsToDouble(LongEncoder.read(inStream));
+        lastTimeStamp = LongEncoder.read(inStream);
+        PackedLongs counts = PackedLongs.read(inStream);
+        PackedLongs bs = PackedLongs.read(inStream);
+        PackedLongs exponents = PackedLongs.read(inStream);
+        PackedLongs mantissas = PackedLongs.read(inStream);
+        PackedLongs deltas = PackedLongs.read(inStream);
+        PackedLongs timestamps = PackedLongs.read(inStream);
+
+        perBSegments = new SegmentStore(deltas.size());
+        long numB = counts.next();
+        long b = 0;
+        for (long i = 0; i < numB; i++) {
+            b += bs.nextSigned();
+            long numA = counts.next();
+            for (long j = 0; j < numA; j++) {
+                double a = SlopeEncoder.read(exponents, mantissas);
+                long numTimestamps = counts.next();
+                long timestamp = 0;
+                for (long k = 0; k < numTimestamps; k++) {
+                    timestamp += deltas.next();
+                    perBSegments.add(timestamp, a, b * epsilon);
+                }
+            }
+        }
+
+        perASegments = new SegmentStore();
+        long numA = counts.next();
+        for (long i = 0; i < numA; i++) {
+            double a = SlopeEncoder.read(exponents, mantissas);
+            long numBT = counts.next();
+            b = 0;
+            for (long j = 0; j < numBT; j++) {
+                b += bs.nextSigned();
+                perASegments.add(timestamps.next(), a, b * epsilon);
+            }
+        }
+
+        long num = counts.next();
+        restSegments = new SegmentStore((int) Math.min(num, timestamps.size()));
+        b = 0;
+        for (long i = 0; i < num; i++) {
+            b += bs.nextSigned();
+            restSegments.add(timestamps.next(), SlopeEncoder.read(exponents, mantissas), b * epsilon);
+        }
     }
 
-    private static ArrayList<MixPieceSegment> readMergedPerBSegments(ByteArrayInputStream inStream) throws IOException {
-        ArrayList<MixPieceSegment> segments = new ArrayList<>();
+    private SegmentStore readMergedPerBSegments(ByteArrayInputStream inStream) throws IOException {
+        SegmentStore segments = new SegmentStore();
         long numB = VariableByteEncoder.read(inStream);
         if (numB == 0)
             return segments;
@@ -343,7 +826,7 @@ public class MixPiece {
                 long timestamp = 0;
                 for (int k = 0; k < numTimestamps; k++) {
                     timestamp += VariableByteEncoder.read(inStream);
-                    segments.add(new MixPieceSegment(timestamp, a, (float) (b * epsilon)));
+                    segments.add(timestamp, a, (float) (b * epsilon));
                 }
             }
         }
@@ -351,8 +834,8 @@ public class MixPiece {
         return segments;
     }
 
-    private static ArrayList<MixPieceSegment> readMergedPerASegments(ByteArrayInputStream inStream) throws IOException {
-        ArrayList<MixPieceSegment> segments = new ArrayList<>();
+    private SegmentStore readMergedPerASegments(ByteArrayInputStream inStream) throws IOException {
+        SegmentStore segments = new SegmentStore();
         int numA = VariableByteEncoder.read(inStream);
         for (int i = 0; i < numA; i++) {
             float a = FloatEncoder.read(inStream);
@@ -362,15 +845,15 @@ public class MixPiece {
                 int b = VariableByteEncoder.read(inStream) + globalMinB + previousB;
                 previousB = b - globalMinB;
                 long timestamp = UIntEncoder.read(inStream);
-                segments.add(new MixPieceSegment(timestamp, a, (float) (b * epsilon)));
+                segments.add(timestamp, a, (float) (b * epsilon));
             }
         }
 
         return segments;
     }
 
-    private static ArrayList<MixPieceSegment> readUnmerged(ByteArrayInputStream inStream) throws IOException {
-        ArrayList<MixPieceSegment> segments = new ArrayList<>();
+    private SegmentStore readUnmerged(ByteArrayInputStream inStream) throws IOException {
+        SegmentStore segments = new SegmentStore();
         int num = VariableByteEncoder.read(inStream);
         if (num == 0)
             return segments;
@@ -380,26 +863,33 @@ public class MixPiece {
             previousB = b - globalMinB;
             float a = FloatEncoder.read(inStream);
             long timestamp = UIntEncoder.read(inStream);
-            segments.add(new MixPieceSegment(timestamp, a, (float) (b * epsilon)));
+            segments.add(timestamp, a, (float) (b * epsilon));
         }
 
         return segments;
     }
 
-    private static void readByteArray(byte[] input) {
-        byte[] binary = Zstd.decompress(input, input.length * 2); //TODO: How to know apriori original size?
+    private static MixPiece readByteArray(byte[] input) throws IOException {
+        long size = Zstd.decompressedSize(input);
+        byte[] binary = Zstd.decompress(input, size > 0 ? (int) size : input.length * 2);
         ByteArrayInputStream inStream = new ByteArrayInputStream(binary);
 
-        try {
-            epsilon = FloatEncoder.read(inStream);
-            globalMinB = VariableByteEncoder.read(inStream);
-            perBSegments = readMergedPerBSegments(inStream);
-            perASegments = readMergedPerASegments(inStream);
-            restSegments = readUnmerged(inStream);
-            lastTimeStamp = VariableByteEncoder.read(inStream);
-            inStream.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+        MixPiece mixPiece = new MixPiece(inStream);
+        inStream.close();
+
+        return mixPiece;
+    }
+
+    private void readByteArray(ByteArrayInputStream inStream) throws IOException {
+        epsilon = FloatEncoder.read(inStream);
+        if (Float.floatToRawIntBits((float) epsilon) < 0) {
+            readPackedByteArray(inStream);
+            return;
         }
+        globalMinB = VariableByteEncoder.read(inStream);
+        perBSegments = readMergedPerBSegments(inStream);
+        perASegments = readMergedPerASegments(inStream);
+        restSegments = readUnmerged(inStream);
+        lastTimeStamp = VariableByteEncoder.read(inStream);
     }
-}
\ No newline at end of file
+}
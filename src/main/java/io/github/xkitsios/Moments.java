@@ -0,0 +1,76 @@
+package io.github.xkitsios;
+
+/*
+ * Count, means and centered second moments of two aligned series x and y. Linear pieces are added in closed form
+ * and combined with the pairwise update of Chan et al., which avoids the cancellation of raw sums of squares.
+ */
+final class Moments {
+    private long count;
+    private double meanX;
+    private double meanY;
+    private double cxx;
+    private double cyy;
+    private double cxy;
+
+    // Adds x = x0 + ax * u and y = y0 + ay * u for u = 0, ..., n - 1. Around their means both lines are a * (u - (n - 1) / 2),
+    // whose squares sum to a^2 * n * (n^2 - 1) / 12
+    void addLines(long n, double x0, double ax, double y0, double ay) {
+        double spread = n * ((double) n * n - 1) / 12;
+        double half = (n - 1) / 2.0;
+        add(n, x0 + ax * half, y0 + ay * half, ax * ax * spread, ay * ay * spread, ax * ay * spread);
+    }
+
+    private void add(long n, double pieceMeanX, double pieceMeanY, double pieceCxx, double pieceCyy, double pieceCxy) {
+        long total = count + n;
+        double dx = pieceMeanX - meanX;
+        double dy = pieceMeanY - meanY;
+        double weight = (double) count * n / total;
+        cxx += pieceCxx + dx * dx * weight;
+        cyy += pieceCyy + dy * dy * weight;
+        cxy += pieceCxy + dx * dy * weight;
+        meanX += dx * n / total;
+        meanY += dy * n / total;
+        count = total;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double getMeanX() {
+        return meanX;
+    }
+
+    double getMeanY() {
+        return meanY;
+    }
+
+    double getCxx() {
+        return cxx;
+    }
+
+    double getCyy() {
+        return cyy;
+    }
+
+    double getCxy() {
+        return cxy;
+    }
+
+    double dot() {
+        return cxy + count * meanX * meanY;
+    }
+
+    double squaredNormX() {
+        return cxx + count * meanX * meanX;
+    }
+
+    double squaredNormY() {
+        return cyy + count * meanY * meanY;
+    }
+
+    double squaredDistance() {
+        double meanDifference = meanX - meanY;
+        return Math.max(0, cxx + cyy - 2 * cxy + count * meanDifference * meanDifference);
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Compression of aligned columns sharing one timestamp array. Timestamps are stored once and every column is
+ * segmented by Mix-Piece in parallel over row indices, so segment starts are small row numbers shared by all
+ * columns instead of timestamps repeated per column. Each column is encoded separately and can be decoded on its own.
+ */
+public class MultiColumn {
+
+    /**
+     * Compress aligned columns and return a binary representation
+     * @param timestamps Strictly increasing timestamps shared by all columns
+     * @param columns Values of each column, aligned with timestamps
+     * @param errors Maximum absolute error of each column
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[][] columns, double[] errors) throws Exception {
+        if (timestamps.length == 0 || columns.length == 0) throw new IllegalArgumentException("No rows or columns to compress");
+        if (columns.length != errors.length)
+            throw new IllegalArgumentException("Expected " + columns.length + " errors but got " + errors.length);
+        for (double[] column : columns)
+            if (column.length != timestamps.length)
+                throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + column.length);
+        for (double error : errors) if (!(error > 0)) throw new IllegalArgumentException("Error must be positive");
+
+        byte[] timestampBinary = compressTimestamps(timestamps);
+        long[] rows = new long[timestamps.length];
+        for (int i = 0; i < rows.length; i++) rows[i] = i;
+        byte[][] columnBinaries = new byte[columns.length][];
+        IntStream.range(0, columns.length).parallel().forEach(c -> columnBinaries[c] = compressColumn(rows, columns[c], errors[c]));
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        VariableByteEncoder.write(timestamps.length, outStream);
+        VariableByteEncoder.write(columns.length, outStream);
+        VariableByteEncoder.write(timestampBinary.length, outStream);
+        for (byte[] columnBinary : columnBinaries) VariableByteEncoder.write(columnBinary.length, outStream);
+        outStream.write(timestampBinary);
+        for (byte[] columnBinary : columnBinaries) outStream.write(columnBinary);
+        outStream.close();
+
+        return outStream.toByteArray();
+    }
+
+    /**
+     * Decompress the shared timestamps of a binary representation
+     * @param binary Binary representation
+     * @return Timestamps
+     * @throws IOException
+     */
+    public static long[] decompressTimestamps(byte[] binary) throws IOException {
+        Header header = new Header(binary);
+        byte[] frame = Arrays.copyOfRange(binary, header.timestampOffset, header.timestampOffset + header.timestampLength);
+        long size = Zstd.decompressedSize(frame);
+        if (size <= 0 || size > Integer.MAX_VALUE) throw new IOException("Invalid size " + size + " of timestamps");
+        byte[] timestampBinary = Zstd.decompress(frame, (int) size);
+        ByteArrayInputStream inStream = new ByteArrayInputStream(timestampBinary);
+        long[] timestamps = new long[header.numRows];
+        timestamps[0] = LongEncoder.read(inStream);
+        for (int i = 1; i < timestamps.length; i++)
+            timestamps[i] = timestamps[i - 1] + (VariableByteEncoder.read(inStream) & 0xFFFFFFFFL);
+
+        return timestamps;
+    }
+
+    /**
+     * Decompress a subset of the columns of a binary representation
+     * @param binary Binary representation
+     * @param columns Indices of the columns to decompress
+     * @return Values of each requested column, aligned with the shared timestamps
+     * @throws IOException
+     */
+    public static double[][] decompress(byte[] binary, int... columns) throws IOException {
+        Header header = new Header(binary);
+        for (int column : columns)
+            if (column < 0 || column >= header.numColumns)
+                throw new IndexOutOfBoundsException("Column " + column + " out of " + header.numColumns);
+
+        double[][] values = new double[columns.length][];
+        try {
+            IntStream.range(0, columns.length).parallel().forEach(c -> {
+                int column = columns[c];
+                values[c] = new double[header.numRows];
+                try {
+                    MixPiece.readSegmentTable(Arrays.copyOfRange(binary, header.columnOffsets[column], header.columnOffsets[column] + header.columnLengths[column])).toValues(values[c]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return values;
+    }
+
+    /**
+     * Number of columns in a binary representation
+     * @param binary Binary representation
+     * @return Number of columns
+     * @throws IOException
+     */
+    public static int getNumColumns(byte[] binary) throws IOException {
+        return new Header(binary).numColumns;
+    }
+
+    private static byte[] compressColumn(long[] rows, double[] column, double error) {
+        try {
+            return MixPiece.compress(rows, column, error);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] compressTimestamps(long[] timestamps) throws IOException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        LongEncoder.write(timestamps[0], outStream);
+        for (int i = 1; i < timestamps.length; i++) {
+            long delta = timestamps[i] - timestamps[i - 1];
+            if (delta <= 0 || delta > 0xFFFFFFFFL)
+                throw new IllegalArgumentException("Timestamp " + timestamps[i] + " must follow " + timestamps[i - 1] + " by 1 to 2^32 - 1");
+            VariableByteEncoder.write((int) delta, outStream);
+        }
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    private static class Header {
+        private final int numRows;
+        private final int numColumns;
+        private final int timestampOffset;
+        private final int timestampLength;
+        private final int[] columnOffsets;
+        private final int[] columnLengths;
+
+        private Header(byte[] binary) throws IOException {
+            ByteArrayInputStream inStream = new ByteArrayInputStream(binary);
+            numRows = VariableByteEncoder.read(inStream);
+            numColumns = VariableByteEncoder.read(inStream);
+            timestampLength = VariableByteEncoder.read(inStream);
+            columnLengths = new int[numColumns];
+            for (int c = 0; c < numColumns; c++) columnLengths[c] = VariableByteEncoder.read(inStream);
+
+            timestampOffset = binary.length - inStream.available();
+            columnOffsets = new int[numColumns];
+            int offset = timestampOffset + timestampLength;
+            for (int c = 0; c < numColumns; c++) {
+                columnOffsets[c] = offset;
+                offset += columnLengths[c];
+            }
+            if (offset != binary.length)
+                throw new IOException("Expected " + offset + " bytes of header and columns but got " + binary.length);
+        }
+    }
+}
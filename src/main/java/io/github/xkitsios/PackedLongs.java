@@ -0,0 +1,109 @@
+package io.github.xkitsios;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Growable column of non-negative longs, serialized as its size followed by blocks of 128 values in the style of
+ * binary packing from FastPFOR: one byte with the bit width of the largest value of the block, then the values in
+ * that many bits each, little-endian. Signed values are stored zigzag-encoded. After reading, the values are
+ * consumed in order with next.
+ */
+final class PackedLongs {
+    private static final int BLOCK_SIZE = 128;
+
+    private long[] values;
+    private int size;
+    private int position;
+
+    PackedLongs() {
+        values = new long[BLOCK_SIZE];
+    }
+
+    private PackedLongs(long[] values) {
+        this.values = values;
+        this.size = values.length;
+    }
+
+    void add(long value) {
+        if (size == values.length) values = Arrays.copyOf(values, size + (size >> 1));
+        values[size++] = value;
+    }
+
+    void addSigned(long value) {
+        add((value << 1) ^ (value >> 63));
+    }
+
+    long next() throws IOException {
+        if (position == size) throw new IOException("Packed column of " + size + " values exhausted");
+        return values[position++];
+    }
+
+    long nextSigned() throws IOException {
+        long value = next();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void write(ByteArrayOutputStream outStream) {
+        VariableByteEncoder.write(size, outStream);
+        long[] words = new long[BLOCK_SIZE];
+        byte[] bytes = new byte[BLOCK_SIZE * Long.BYTES];
+        for (int from = 0; from < size; from += BLOCK_SIZE) {
+            int to = Math.min(size, from + BLOCK_SIZE);
+            long or = 0;
+            for (int i = from; i < to; i++) or |= values[i];
+            int bits = Long.SIZE - Long.numberOfLeadingZeros(or);
+            outStream.write(bits);
+            if (bits == 0) continue;
+
+            Arrays.fill(words, 0);
+            long bitPosition = 0;
+            for (int i = from; i < to; i++, bitPosition += bits) {
+                int word = (int) (bitPosition >>> 6);
+                int offset = (int) (bitPosition & 63);
+                words[word] |= values[i] << offset;
+                if (offset + bits > Long.SIZE) words[word + 1] |= values[i] >>> (Long.SIZE - offset);
+            }
+            int numBytes = (int) ((bitPosition + 7) >>> 3);
+            for (int k = 0; k < numBytes; k++) bytes[k] = (byte) (words[k >>> 3] >>> ((k & 7) << 3));
+            outStream.write(bytes, 0, numBytes);
+        }
+    }
+
+    static PackedLongs read(ByteArrayInputStream inStream) throws IOException {
+        int size = VariableByteEncoder.read(inStream);
+        if (size < 0) throw new IOException("Invalid packed column size " + size);
+        long[] values = new long[size];
+        long[] words = new long[BLOCK_SIZE + 1];
+        byte[] bytes = new byte[BLOCK_SIZE * Long.BYTES];
+        for (int from = 0; from < size; from += BLOCK_SIZE) {
+            int to = Math.min(size, from + BLOCK_SIZE);
+            int bits = inStream.read();
+            if (bits < 0 || bits > Long.SIZE) throw new IOException("Invalid bit width " + bits);
+            if (bits == 0) continue;
+
+            int numBytes = (int) (((long) (to - from) * bits + 7) >>> 3);
+            if (inStream.read(bytes, 0, numBytes) != numBytes) throw new IOException();
+            Arrays.fill(words, 0);
+            for (int k = 0; k < numBytes; k++) words[k >>> 3] |= (bytes[k] & 0xFFL) << ((k & 7) << 3);
+
+            long mask = bits == Long.SIZE ? -1L : (1L << bits) - 1;
+            long bitPosition = 0;
+            for (int i = from; i < to; i++, bitPosition += bits) {
+                int word = (int) (bitPosition >>> 6);
+                int offset = (int) (bitPosition & 63);
+                long value = words[word] >>> offset;
+                if (offset + bits > Long.SIZE) value |= words[word + 1] << (Long.SIZE - offset);
+                values[i] = value & mask;
+            }
+        }
+
+        return new PackedLongs(values);
+    }
+}
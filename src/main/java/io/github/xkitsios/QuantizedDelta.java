@@ -0,0 +1,112 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Fallback for time series that linear segments do not compress, such as noise: every value is quantized to a
+ * multiple of twice the maximum absolute error, and the timestamps and quantized values are stored as bit-packed
+ * deltas. Decoding gives one constant segment per point, so it reconstructs the same timestamps as Sim-Piece and
+ * Mix-Piece.
+ */
+public class QuantizedDelta {
+    private QuantizedDelta() {
+    }
+
+    /**
+     * Compress a list of Points and return a binary representation
+     * @param points Time-series data
+     * @param error Maximum absolute error
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(List<Point> points, double error) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        return compress(columns.getTimestamps(), columns.getValues(), error);
+    }
+
+    /**
+     * Compress time-series columns and return a binary representation, without allocating per point
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(timestamps, values, 0, timestamps.length, error, outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    /**
+     * Decompress a binary representation and return a list of Points
+     * @param binary Binary representation
+     * @return Time-series data
+     * @throws IOException
+     */
+    public static List<Point> decompress(byte[] binary) throws IOException {
+        return readSegmentTable(binary).toPoints();
+    }
+
+    static void compress(long[] timestamps, double[] values, int from, int to, double error, ByteArrayOutputStream outStream) throws Exception {
+        if (from >= to || error <= 0) throw new Exception();
+
+        double step = 2 * error;
+        PackedLongs deltas = new PackedLongs();
+        PackedLongs keys = new PackedLongs();
+        long previousKey = 0;
+        for (int i = from; i < to; i++) {
+            if (i > from) deltas.add(timestamps[i] - timestamps[i - 1]);
+            long key = Math.round(values[i] / step);
+            keys.addSigned(key - previousKey);
+            previousKey = key;
+        }
+
+        LongEncoder.write(Double.doubleToLongBits(error), outStream);
+        LongEncoder.write(timestamps[from], outStream);
+        deltas.write(outStream);
+        keys.write(outStream);
+    }
+
+    static void verify(byte[] body, long[] timestamps, double[] values, int from, int to, double error, ErrorStats stats) throws IOException, ErrorBoundException {
+        read(new ByteArrayInputStream(body)).verify(timestamps, values, from, to, error, stats);
+    }
+
+    static List<Point> decompress(ByteArrayInputStream inStream) throws IOException {
+        return read(inStream).toPoints();
+    }
+
+    static SegmentTable readSegmentTable(byte[] binary) throws IOException {
+        long size = Zstd.decompressedSize(binary);
+        return read(new ByteArrayInputStream(Zstd.decompress(binary, size > 0 ? (int) size : binary.length * 2)));
+    }
+
+    private static SegmentTable read(ByteArrayInputStream inStream) throws IOException {
+        double epsilon = Double.longBitsToDouble(LongEncoder.read(inStream));
+        long timestamp = LongEncoder.read(inStream);
+        PackedLongs deltas = PackedLongs.read(inStream);
+        PackedLongs keys = PackedLongs.read(inStream);
+
+        long[] timestamps = new long[keys.size()];
+        double[] b = new double[keys.size()];
+        long key = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            if (i > 0) timestamp += deltas.next();
+            key += keys.nextSigned();
+            timestamps[i] = timestamp;
+            b[i] = key * (2 * epsilon);
+        }
+
+        return new SegmentTable(timestamps, new double[timestamps.length], b, timestamp, epsilon, true);
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.xkitsios;
+
+/**
+ * Sim-Piece binary representation of consecutive points of one series, emitted by IngestionEngine
+ */
+public class SealedBlob {
+    private final long seriesId;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final int numPoints;
+    private final byte[] binary;
+
+    /**
+     * Constructor for SealedBlob
+     * @param seriesId Series the points belong to
+     * @param firstTimestamp Timestamp of the first point
+     * @param lastTimestamp Timestamp of the last point
+     * @param numPoints Number of ingested points
+     * @param binary Binary representation, decompressed with SimPiece
+     */
+    public SealedBlob(long seriesId, long firstTimestamp, long lastTimestamp, int numPoints, byte[] binary) {
+        this.seriesId = seriesId;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.numPoints = numPoints;
+        this.binary = binary;
+    }
+
+    /**
+     * Getter for seriesId
+     * @return Series the points belong to
+     */
+    public long getSeriesId() {
+        return seriesId;
+    }
+
+    /**
+     * Getter for firstTimestamp
+     * @return Timestamp of the first point
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * Getter for lastTimestamp
+     * @return Timestamp of the last point
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Getter for numPoints
+     * @return Number of ingested points
+     */
+    public int getNumPoints() {
+        return numPoints;
+    }
+
+    /**
+     * Getter for binary
+     * @return Binary representation, decompressed with SimPiece
+     */
+    public byte[] getBinary() {
+        return binary;
+    }
+}
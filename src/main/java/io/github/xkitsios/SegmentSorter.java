@@ -0,0 +1,239 @@
+package io.github.xkitsios;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Stable external sort of segments holding at most runCapacity of them in memory. Full buffers are sorted and
+ * spilled as runs to temporary files, which are k-way merged with ties broken by run, so the order is the one
+ * SegmentStore.sort gives on all segments at once. Runs beyond fanIn are first merged in consecutive batches.
+ */
+final class SegmentSorter implements Closeable {
+    static final int IO_BUFFER = 1 << 13;
+    private static final int SEGMENT_BYTES = Long.BYTES + 3 * Double.BYTES;
+
+    private final Order order;
+    private final int runCapacity;
+    private final int fanIn;
+    private final Path directory;
+    private List<Path> runs = new ArrayList<>();
+    private SegmentStore buffer;
+    private int bufferCapacity;
+    private boolean sorted;
+    private long size;
+
+    interface Order {
+        int compare(SegmentStore segments, int i, int j);
+    }
+
+    SegmentSorter(Order order, int runCapacity, int fanIn, Path directory) {
+        if (runCapacity < 1 || fanIn < 2) throw new IllegalArgumentException("Run capacity must be positive and fan-in at least 2");
+        this.order = order;
+        this.runCapacity = runCapacity;
+        this.fanIn = fanIn;
+        this.directory = directory;
+    }
+
+    void add(long initTimestamp, double aMin, double aMax, double b) throws IOException {
+        if (buffer == null || buffer.size() == bufferCapacity) grow();
+        buffer.add(initTimestamp, aMin, aMax, b);
+        sorted = false;
+        size++;
+        if (buffer.size() == runCapacity) spill();
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Sorted segments, which can be iterated again with a new cursor. Segments must not be added afterwards
+    Cursor cursor() throws IOException {
+        if (runs.isEmpty()) {
+            if (buffer == null) grow();
+            sort();
+            return new Cursor(buffer);
+        }
+        if (buffer != null && !buffer.isEmpty()) spill();
+        buffer = null;
+        while (runs.size() > fanIn) {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += fanIn) {
+                List<Path> batch = runs.subList(from, Math.min(runs.size(), from + fanIn));
+                if (batch.size() == 1) {
+                    merged.add(batch.get(0));
+                    continue;
+                }
+                Path run = Files.createTempFile(directory, "run", ".tmp");
+                try (Cursor cursor = new Cursor(batch, order); DataOutputStream outStream = output(run)) {
+                    while (cursor.next()) write(outStream, cursor.getInitTimestamp(), cursor.getAMin(), cursor.getAMax(), cursor.getB());
+                }
+                for (Path path : batch) Files.delete(path);
+                merged.add(run);
+            }
+            runs = merged;
+        }
+
+        return new Cursor(runs, order);
+    }
+
+    // Deletes the runs
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) Files.deleteIfExists(run);
+        runs.clear();
+        buffer = null;
+    }
+
+    static DataOutputStream output(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), IO_BUFFER));
+    }
+
+    static DataInputStream input(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER));
+    }
+
+    // Doubles the buffer up to runCapacity, so small inputs do not allocate it all
+    private void grow() {
+        bufferCapacity = buffer == null ? Math.min(runCapacity, 1 << 10) : Math.min(runCapacity, 2 * bufferCapacity);
+        SegmentStore grown = new SegmentStore(bufferCapacity);
+        if (buffer != null) grown.addAll(buffer);
+        buffer = grown;
+    }
+
+    private void sort() {
+        if (!sorted) buffer.sort((i, j) -> order.compare(buffer, i, j));
+        sorted = true;
+    }
+
+    private void spill() throws IOException {
+        sort();
+        Path run = Files.createTempFile(directory, "run", ".tmp");
+        try (DataOutputStream outStream = output(run)) {
+            for (int i = 0; i < buffer.size(); i++)
+                write(outStream, buffer.getInitTimestamp(i), buffer.getAMin(i), buffer.getAMax(i), buffer.getB(i));
+        }
+        runs.add(run);
+        buffer.truncate(0);
+    }
+
+    private static void write(DataOutputStream outStream, long initTimestamp, double aMin, double aMax, double b) throws IOException {
+        outStream.writeLong(initTimestamp);
+        outStream.writeDouble(aMin);
+        outStream.writeDouble(aMax);
+        outStream.writeDouble(b);
+    }
+
+    /*
+     * Iterator over sorted segments, either of one sorted store or of the heads of several runs kept in a binary
+     * heap. The current segment stays at the root of the heap until the next call refills its run.
+     */
+    static final class Cursor implements Closeable {
+        private final SegmentStore segments;
+        private final Order order;
+        private final DataInputStream[] inStreams;
+        private final long[] remaining;
+        private final int[] heap;
+        private int heapSize;
+        private int index = -1;
+
+        private Cursor(SegmentStore segments) {
+            this.segments = segments;
+            this.order = null;
+            this.inStreams = null;
+            this.remaining = null;
+            this.heap = null;
+        }
+
+        private Cursor(List<Path> runs, Order order) throws IOException {
+            this.segments = new SegmentStore(runs.size());
+            this.order = order;
+            this.inStreams = new DataInputStream[runs.size()];
+            this.remaining = new long[runs.size()];
+            this.heap = new int[runs.size()];
+            try {
+                for (int run = 0; run < runs.size(); run++) {
+                    segments.add(0, 0, 0, 0);
+                    inStreams[run] = input(runs.get(run));
+                    remaining[run] = Files.size(runs.get(run)) / SEGMENT_BYTES;
+                    if (read(run)) heap[heapSize++] = run;
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(i);
+        }
+
+        boolean next() throws IOException {
+            if (inStreams == null) return ++index < segments.size();
+            if (heapSize == 0) return false;
+            if (index >= 0 && !read(index)) {
+                heap[0] = heap[--heapSize];
+                if (heapSize == 0) return false;
+            }
+            siftDown(0);
+            index = heap[0];
+            return true;
+        }
+
+        long getInitTimestamp() {
+            return segments.getInitTimestamp(index);
+        }
+
+        double getAMin() {
+            return segments.getAMin(index);
+        }
+
+        double getAMax() {
+            return segments.getAMax(index);
+        }
+
+        double getA() {
+            return segments.getA(index);
+        }
+
+        double getB() {
+            return segments.getB(index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inStreams == null) return;
+            for (DataInputStream inStream : inStreams)
+                if (inStream != null) inStream.close();
+        }
+
+        private boolean read(int run) throws IOException {
+            if (remaining[run] == 0) return false;
+            remaining[run]--;
+            DataInputStream inStream = inStreams[run];
+            segments.set(run, inStream.readLong(), inStream.readDouble(), inStream.readDouble(), inStream.readDouble());
+            return true;
+        }
+
+        private boolean less(int run, int other) {
+            int compare = order.compare(segments, run, other);
+            return compare != 0 ? compare < 0 : run < other;
+        }
+
+        private void siftDown(int i) {
+            int run = heap[i];
+            while (2 * i + 1 < heapSize) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && less(heap[child + 1], heap[child])) child++;
+                if (!less(heap[child], run)) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = run;
+        }
+    }
+}
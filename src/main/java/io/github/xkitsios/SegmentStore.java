@@ -0,0 +1,283 @@
+package io.github.xkitsios;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Growable struct-of-arrays store of segments. A segment is its initTimestamp, its range of slopes [aMin, aMax]
+ * and its quantized starting value b; the slope used for reconstruction is the middle of the range.
+ */
+final class SegmentStore {
+    private long[] timestamps;
+    private double[] aMins;
+    private double[] aMaxs;
+    private double[] bs;
+    private int size;
+
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    interface IndexComparator {
+        int compare(int i, int j);
+    }
+
+    SegmentStore() {
+        this(16);
+    }
+
+    SegmentStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        timestamps = new long[capacity];
+        aMins = new double[capacity];
+        aMaxs = new double[capacity];
+        bs = new double[capacity];
+    }
+
+    void add(long initTimestamp, double a, double b) {
+        add(initTimestamp, a, a, b);
+    }
+
+    void add(long initTimestamp, double aMin, double aMax, double b) {
+        if (size == timestamps.length) grow();
+        timestamps[size] = initTimestamp;
+        aMins[size] = aMin;
+        aMaxs[size] = aMax;
+        bs[size] = b;
+        size++;
+    }
+
+    void addAll(SegmentStore other) {
+        for (int i = 0; i < other.size; i++) add(other.timestamps[i], other.aMins[i], other.aMaxs[i], other.bs[i]);
+    }
+
+    void remove(int i) {
+        int moved = size - i - 1;
+        System.arraycopy(timestamps, i + 1, timestamps, i, moved);
+        System.arraycopy(aMins, i + 1, aMins, i, moved);
+        System.arraycopy(aMaxs, i + 1, aMaxs, i, moved);
+        System.arraycopy(bs, i + 1, bs, i, moved);
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long getInitTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    double getAMin(int i) {
+        return aMins[i];
+    }
+
+    double getAMax(int i) {
+        return aMaxs[i];
+    }
+
+    double getA(int i) {
+        return (aMins[i] + aMaxs[i]) / 2;
+    }
+
+    double getB(int i) {
+        return bs[i];
+    }
+
+    void set(int i, long initTimestamp, double aMin, double aMax, double b) {
+        timestamps[i] = initTimestamp;
+        aMins[i] = aMin;
+        aMaxs[i] = aMax;
+        bs[i] = b;
+    }
+
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    // Stable sort of the segments, permuting the columns in place
+    void sort(IndexComparator comparator) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        mergeSort(order, new int[size], 0, size, comparator);
+
+        for (int start = 0; start < size; start++) {
+            if (order[start] < 0) continue;
+            long timestamp = timestamps[start];
+            double aMin = aMins[start];
+            double aMax = aMaxs[start];
+            double b = bs[start];
+            int i = start;
+            while (true) {
+                int next = order[i];
+                order[i] = -1;
+                if (next == start) {
+                    set(i, timestamp, aMin, aMax, b);
+                    break;
+                }
+                set(i, timestamps[next], aMins[next], aMaxs[next], bs[next]);
+                i = next;
+            }
+        }
+    }
+
+    SegmentTable toSegmentTable(long lastTimeStamp, double epsilon, boolean exact) {
+        sort((i, j) -> Long.compare(timestamps[i], timestamps[j]));
+        double[] a = new double[size];
+        for (int i = 0; i < size; i++) a[i] = getA(i);
+
+        return new SegmentTable(Arrays.copyOf(timestamps, size), a, Arrays.copyOf(bs, size), lastTimeStamp, epsilon, exact);
+    }
+
+    // Like toSegmentTable, but merges the runs of increasing timestamps that decoding produces in parallel
+    SegmentTable toSegmentTable(long lastTimeStamp, double epsilon, boolean exact, ForkJoinPool pool) {
+        if (size < PARALLEL_THRESHOLD) return toSegmentTable(lastTimeStamp, epsilon, exact);
+
+        int[] runStarts = new int[size + 1];
+        int numRuns = 1;
+        for (int i = 1; i < size; i++) if (timestamps[i] < timestamps[i - 1]) runStarts[numRuns++] = i;
+        runStarts[numRuns] = size;
+
+        long[] keys = Arrays.copyOf(timestamps, size);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        long[] sortedKeys = keys.clone();
+        int[] sortedOrder = order.clone();
+        pool.invoke(new MergeRuns(keys, order, sortedKeys, sortedOrder, runStarts, 0, numRuns));
+
+        double[] a = new double[size];
+        double[] b = new double[size];
+        pool.invoke(new Gather(sortedOrder, a, b, 0, size));
+
+        return new SegmentTable(sortedKeys, a, b, lastTimeStamp, epsilon, exact);
+    }
+
+    // Merges runs [lo, hi) from src into dst, with both holding the unmerged runs initially
+    private static final class MergeRuns extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] srcKeys;
+        private final int[] srcOrder;
+        private final long[] dstKeys;
+        private final int[] dstOrder;
+        private final int[] runStarts;
+        private final int lo;
+        private final int hi;
+
+        private MergeRuns(long[] srcKeys, int[] srcOrder, long[] dstKeys, int[] dstOrder, int[] runStarts, int lo, int hi) {
+            this.srcKeys = srcKeys;
+            this.srcOrder = srcOrder;
+            this.dstKeys = dstKeys;
+            this.dstOrder = dstOrder;
+            this.runStarts = runStarts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            int from = runStarts[lo];
+            int to = runStarts[hi];
+            if (hi - lo == 1) {
+                System.arraycopy(srcKeys, from, dstKeys, from, to - from);
+                System.arraycopy(srcOrder, from, dstOrder, from, to - from);
+                return;
+            }
+
+            int middleRun = (lo + hi) >>> 1;
+            MergeRuns left = new MergeRuns(dstKeys, dstOrder, srcKeys, srcOrder, runStarts, lo, middleRun);
+            MergeRuns right = new MergeRuns(dstKeys, dstOrder, srcKeys, srcOrder, runStarts, middleRun, hi);
+            if (to - from < PARALLEL_THRESHOLD) {
+                left.compute();
+                right.compute();
+            } else {
+                invokeAll(left, right);
+            }
+
+            int middle = runStarts[middleRun];
+            int i = from, j = middle, k = from;
+            while (i < middle && j < to) {
+                if (srcKeys[j] < srcKeys[i]) {
+                    dstKeys[k] = srcKeys[j];
+                    dstOrder[k++] = srcOrder[j++];
+                } else {
+                    dstKeys[k] = srcKeys[i];
+                    dstOrder[k++] = srcOrder[i++];
+                }
+            }
+            System.arraycopy(srcKeys, i, dstKeys, k, middle - i);
+            System.arraycopy(srcOrder, i, dstOrder, k, middle - i);
+            k += middle - i;
+            System.arraycopy(srcKeys, j, dstKeys, k, to - j);
+            System.arraycopy(srcOrder, j, dstOrder, k, to - j);
+        }
+    }
+
+    private final class Gather extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+        private final double[] a;
+        private final double[] b;
+        private final int from;
+        private final int to;
+
+        private Gather(int[] order, double[] a, double[] b, int from, int to) {
+            this.order = order;
+            this.a = a;
+            this.b = b;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Gather(order, a, b, from, middle), new Gather(order, a, b, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                a[i] = getA(order[i]);
+                b[i] = bs[order[i]];
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = timestamps.length + (timestamps.length >> 1) + 1;
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        aMins = Arrays.copyOf(aMins, capacity);
+        aMaxs = Arrays.copyOf(aMaxs, capacity);
+        bs = Arrays.copyOf(bs, capacity);
+    }
+
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, IndexComparator comparator) {
+        if (to - from <= 32) {
+            for (int i = from + 1; i < to; i++) {
+                int current = order[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(order[j], current) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = current;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle, comparator);
+        mergeSort(order, buffer, middle, to, comparator);
+        if (comparator.compare(order[middle - 1], order[middle]) <= 0) return;
+
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from, right = middle, k = from;
+        while (left < middle && right < to)
+            order[k++] = comparator.compare(buffer[right], buffer[left]) < 0 ? buffer[right++] : buffer[left++];
+        while (left < middle) order[k++] = buffer[left++];
+        while (right < to) order[k++] = buffer[right++];
+    }
+}
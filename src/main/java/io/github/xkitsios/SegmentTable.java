@@ -0,0 +1,324 @@
+package io.github.xkitsios;
+
+import java.nio.BufferOverflowException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Decoded segments sorted by initTimestamp. Segment i covers [getInitTimestamp(i), getEndTimestamp(i)]
+ * and reconstructs each timestamp t in it as a * (t - initTimestamp) + b. The table is exact if its slopes,
+ * starting values and epsilon are the doubles compression checked the error with; otherwise they were stored as
+ * floats, and reconstructions may exceed epsilon by the rounding of floats.
+ */
+final class SegmentTable {
+    // Bound of the error on top of epsilon, relative to the magnitudes in a reconstruction: twice the relative
+    // rounding of floats or a few units of the last place of doubles
+    private static final double FLOAT_SLACK = 0x1p-22;
+    private static final double EXACT_SLACK = 0x1p-50;
+
+    private final long[] timestamps;
+    private final double[] a;
+    private final double[] b;
+    private final long lastTimeStamp;
+    private final double epsilon;
+    private final boolean exact;
+
+    SegmentTable(long[] timestamps, double[] a, double[] b, long lastTimeStamp, double epsilon, boolean exact) {
+        this.timestamps = timestamps;
+        this.a = a;
+        this.b = b;
+        this.lastTimeStamp = lastTimeStamp;
+        this.epsilon = epsilon;
+        this.exact = exact;
+    }
+
+    // Concatenation of tables with the same epsilon and exactness whose time ranges follow each other without gaps or
+    // overlaps
+    static SegmentTable concatenate(List<SegmentTable> tables) {
+        if (tables.isEmpty()) throw new IllegalArgumentException("No time series to concatenate");
+        List<SegmentTable> sorted = new ArrayList<>(tables);
+        sorted.sort(Comparator.comparingLong(table -> table.getInitTimestamp(0)));
+        int size = 0;
+        for (int k = 0; k < sorted.size(); k++) {
+            SegmentTable table = sorted.get(k);
+            if (Double.compare(table.epsilon, sorted.get(0).epsilon) != 0)
+                throw new IllegalArgumentException("Error " + table.epsilon + " differs from " + sorted.get(0).epsilon);
+            if (table.exact != sorted.get(0).exact)
+                throw new IllegalArgumentException("Time series with exact segments cannot be concatenated with ones stored as floats");
+            if (k > 0 && table.getInitTimestamp(0) != sorted.get(k - 1).lastTimeStamp + 1)
+                throw new IllegalArgumentException("Time series starting at " + table.getInitTimestamp(0) + " does not follow the one ending at " + sorted.get(k - 1).lastTimeStamp);
+            size += table.size();
+        }
+
+        long[] timestamps = new long[size];
+        double[] a = new double[size];
+        double[] b = new double[size];
+        int offset = 0;
+        for (SegmentTable table : sorted) {
+            System.arraycopy(table.timestamps, 0, timestamps, offset, table.size());
+            System.arraycopy(table.a, 0, a, offset, table.size());
+            System.arraycopy(table.b, 0, b, offset, table.size());
+            offset += table.size();
+        }
+
+        SegmentTable last = sorted.get(sorted.size() - 1);
+        return new SegmentTable(timestamps, a, b, last.lastTimeStamp, last.epsilon, last.exact);
+    }
+
+    int size() {
+        return timestamps.length;
+    }
+
+    long getInitTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    long getEndTimestamp(int i) {
+        return i + 1 < timestamps.length ? timestamps[i + 1] - 1 : lastTimeStamp;
+    }
+
+    double getA(int i) {
+        return a[i];
+    }
+
+    double getB(int i) {
+        return b[i];
+    }
+
+    long getLastTimeStamp() {
+        return lastTimeStamp;
+    }
+
+    double getEpsilon() {
+        return epsilon;
+    }
+
+    boolean isExact() {
+        return exact;
+    }
+
+    long getSizeInBytes() {
+        return 64 + (long) timestamps.length * (Long.BYTES + 2 * Double.BYTES);
+    }
+
+    double value(int i, long timestamp) {
+        return a[i] * (timestamp - timestamps[i]) + b[i];
+    }
+
+    int getNumPoints() {
+        long end = Math.max(lastTimeStamp, timestamps[timestamps.length - 1] - 1);
+        return Math.toIntExact(end - timestamps[0] + 1);
+    }
+
+    List<Point> toPoints() {
+        List<Point> points = new ArrayList<>(getNumPoints());
+        long currentTimeStamp = timestamps[0];
+
+        for (int i = 0; i < timestamps.length - 1; i++) {
+            while (currentTimeStamp < timestamps[i + 1]) {
+                points.add(new Point(currentTimeStamp, value(i, currentTimeStamp)));
+                currentTimeStamp++;
+            }
+        }
+
+        while (currentTimeStamp <= lastTimeStamp) {
+            points.add(new Point(currentTimeStamp, value(timestamps.length - 1, currentTimeStamp)));
+            currentTimeStamp++;
+        }
+
+        return points;
+    }
+
+    int toArrays(long[] timestampsOut, double[] valuesOut) {
+        int numPoints = getNumPoints();
+        if (timestampsOut.length < numPoints || valuesOut.length < numPoints)
+            throw new IllegalArgumentException("Output arrays must hold " + numPoints + " points");
+        int k = 0;
+        long currentTimeStamp = timestamps[0];
+        for (int i = 0; i < timestamps.length; i++) {
+            long end = getEndTimestamp(i);
+            for (; currentTimeStamp <= end; currentTimeStamp++, k++) {
+                timestampsOut[k] = currentTimeStamp;
+                valuesOut[k] = value(i, currentTimeStamp);
+            }
+        }
+
+        return k;
+    }
+
+    // Like toArrays, without the timestamps, for callers that already have them
+    int toValues(double[] valuesOut) {
+        int numPoints = getNumPoints();
+        if (valuesOut.length < numPoints) throw new IllegalArgumentException("Output array must hold " + numPoints + " points");
+        int k = 0;
+        long currentTimeStamp = timestamps[0];
+        for (int i = 0; i < timestamps.length; i++) {
+            long end = getEndTimestamp(i);
+            for (; currentTimeStamp <= end; currentTimeStamp++, k++) valuesOut[k] = value(i, currentTimeStamp);
+        }
+
+        return k;
+    }
+
+    // Like toArrays, evaluating disjoint ranges of segments in parallel. Timestamp t goes to index t - first timestamp
+    int toArrays(long[] timestampsOut, double[] valuesOut, ForkJoinPool pool) {
+        int numPoints = getNumPoints();
+        if (timestampsOut.length < numPoints || valuesOut.length < numPoints)
+            throw new IllegalArgumentException("Output arrays must hold " + numPoints + " points");
+        pool.invoke(new Evaluate(timestampsOut, valuesOut, 0, timestamps.length));
+
+        return numPoints;
+    }
+
+    private final class Evaluate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int SEQUENTIAL_POINTS = 1 << 16;
+
+        private final long[] timestampsOut;
+        private final double[] valuesOut;
+        private final int from;
+        private final int to;
+
+        private Evaluate(long[] timestampsOut, double[] valuesOut, int from, int to) {
+            this.timestampsOut = timestampsOut;
+            this.valuesOut = valuesOut;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && getEndTimestamp(to - 1) - timestamps[from] >= SEQUENTIAL_POINTS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Evaluate(timestampsOut, valuesOut, from, middle), new Evaluate(timestampsOut, valuesOut, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                long end = getEndTimestamp(i);
+                int k = (int) (timestamps[i] - timestamps[0]);
+                for (long currentTimeStamp = timestamps[i]; currentTimeStamp <= end; currentTimeStamp++, k++) {
+                    timestampsOut[k] = currentTimeStamp;
+                    valuesOut[k] = value(i, currentTimeStamp);
+                }
+            }
+        }
+    }
+
+    int toBuffers(LongBuffer timestampsOut, DoubleBuffer valuesOut) {
+        int numPoints = getNumPoints();
+        if (timestampsOut.remaining() < numPoints || valuesOut.remaining() < numPoints)
+            throw new BufferOverflowException();
+        int k = 0;
+        long currentTimeStamp = timestamps[0];
+        for (int i = 0; i < timestamps.length; i++) {
+            long end = getEndTimestamp(i);
+            for (; currentTimeStamp <= end; currentTimeStamp++, k++) {
+                timestampsOut.put(currentTimeStamp);
+                valuesOut.put(value(i, currentTimeStamp));
+            }
+        }
+
+        return k;
+    }
+
+    // Error of each original point against the segment the decoder evaluates it with, in one pass over sorted points
+    void verify(long[] pointTimestamps, double[] pointValues, int from, int to, double bound, ErrorStats stats) throws ErrorBoundException {
+        int segment = 0;
+        for (int i = from; i < to; i++) {
+            while (segment + 1 < timestamps.length && timestamps[segment + 1] <= pointTimestamps[i]) segment++;
+            stats.accept(pointTimestamps[i], Math.abs(value(segment, pointTimestamps[i]) - pointValues[i]), bound);
+        }
+    }
+
+    List<Interval> findIntervals(ValuePredicate predicate) {
+        List<Interval> intervals = new ArrayList<>();
+
+        for (int i = 0; i < timestamps.length; i++) {
+            long start = timestamps[i];
+            long end = getEndTimestamp(i);
+            if (end < start) continue;
+
+            double bound = epsilon + slack(i, end);
+            double possibleLower = predicate.getLower() - bound;
+            double possibleUpper = predicate.getUpper() + bound;
+            double definiteLower = predicate.getLower() + bound;
+            double definiteUpper = predicate.getUpper() - bound;
+
+            long[] possible = matching(i, start, end, possibleLower, possibleUpper);
+            if (possible == null) continue;
+            long[] definite = definiteLower <= definiteUpper ? matching(i, possible[0], possible[1], definiteLower, definiteUpper) : null;
+            if (definite == null) {
+                append(intervals, possible[0], possible[1], false);
+                continue;
+            }
+            if (possible[0] < definite[0]) append(intervals, possible[0], definite[0] - 1, false);
+            append(intervals, definite[0], definite[1], true);
+            if (definite[1] < possible[1]) append(intervals, definite[1] + 1, possible[1], false);
+        }
+
+        return intervals;
+    }
+
+    // Error on top of epsilon of the reconstructions of segment i up to end, from the rounding of its slope,
+    // starting value and epsilon
+    private double slack(int i, long end) {
+        double magnitude = Math.abs(b[i]) + Math.abs(a[i]) * (end - timestamps[i]) + epsilon;
+        return magnitude * (exact ? EXACT_SLACK : FLOAT_SLACK);
+    }
+
+    private static void append(List<Interval> intervals, long start, long end, boolean definite) {
+        if (!intervals.isEmpty()) {
+            Interval last = intervals.get(intervals.size() - 1);
+            if (last.isDefinite() == definite && last.getEnd() + 1 == start) {
+                intervals.set(intervals.size() - 1, new Interval(last.getStart(), end, definite));
+                return;
+            }
+        }
+        intervals.add(new Interval(start, end, definite));
+    }
+
+    // Timestamps of [start, end] whose reconstruction lies in [lower, upper], or null if none
+    private long[] matching(int i, long start, long end, double lower, double upper) {
+        double first = value(i, start);
+        double last = value(i, end);
+        if (Math.max(first, last) < lower || Math.min(first, last) > upper) return null;
+
+        long from = start;
+        long to = end;
+        if (a[i] > 0) {
+            if (first < lower) from = firstAtLeast(i, start, end, lower);
+            if (last > upper) to = firstAtLeast(i, start, end, Math.nextUp(upper)) - 1;
+        } else if (a[i] < 0) {
+            if (first > upper) from = firstAtMost(i, start, end, upper);
+            if (last < lower) to = firstAtMost(i, start, end, Math.nextDown(lower)) - 1;
+        }
+
+        return from <= to ? new long[]{from, to} : null;
+    }
+
+    // Smallest t in [start, end + 1] with value(i, t) >= threshold, for a[i] > 0
+    private long firstAtLeast(int i, long start, long end, double threshold) {
+        long t = clamp(timestamps[i] + Math.ceil((threshold - b[i]) / a[i]), start, end + 1);
+        while (t > start && value(i, t - 1) >= threshold) t--;
+        while (t <= end && value(i, t) < threshold) t++;
+        return t;
+    }
+
+    // Smallest t in [start, end + 1] with value(i, t) <= threshold, for a[i] < 0
+    private long firstAtMost(int i, long start, long end, double threshold) {
+        long t = clamp(timestamps[i] + Math.ceil((threshold - b[i]) / a[i]), start, end + 1);
+        while (t > start && value(i, t - 1) <= threshold) t--;
+        while (t <= end && value(i, t) > threshold) t++;
+        return t;
+    }
+
+    private static long clamp(double value, long min, long max) {
+        if (!(value > min)) return min;
+        return value < max ? (long) value : max;
+    }
+}
@@ -0,0 +1,185 @@
+package io.github.xkitsios;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoded, time-sorted segment tables keyed by the content of the binary representation.
+ * Repeated queries on a cached blob skip Zstd and segment decoding as well as sorting. Safe for concurrent use.
+ * Cached blobs must not be modified afterwards.
+ */
+public class SegmentTableCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Key, SegmentTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeInBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Constructor for SegmentTableCache
+     * @param maxBytes Maximum estimated size of the cached tables and their keys
+     */
+    public SegmentTableCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("Cache size must be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Decompress a binary representation and return a list of Points
+     * @param binary Binary representation
+     * @param codec Algorithm that produced the binary representation
+     * @return Time-series data
+     * @throws IOException
+     */
+    public List<Point> decompress(byte[] binary, Codec codec) throws IOException {
+        return get(binary, codec).toPoints();
+    }
+
+    /**
+     * Number of points a binary representation decompresses to
+     * @param binary Binary representation
+     * @param codec Algorithm that produced the binary representation
+     * @return Number of points
+     * @throws IOException
+     */
+    public int decompressedSize(byte[] binary, Codec codec) throws IOException {
+        return get(binary, codec).getNumPoints();
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided arrays, without allocating per point
+     * @param binary Binary representation
+     * @param codec Algorithm that produced the binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary, codec) points
+     * @param values Output values, with room for decompressedSize(binary, codec) points
+     * @return Number of points written
+     * @throws IOException
+     */
+    public int decompressInto(byte[] binary, Codec codec, long[] timestamps, double[] values) throws IOException {
+        return get(binary, codec).toArrays(timestamps, values);
+    }
+
+    /**
+     * Find the time ranges where the original values satisfy a predicate
+     * @param binary Binary representation
+     * @param codec Algorithm that produced the binary representation
+     * @param predicate Value range to search for
+     * @return Disjoint intervals in time order, each either definitely or possibly matching
+     * @throws IOException
+     */
+    public List<Interval> findIntervals(byte[] binary, Codec codec, ValuePredicate predicate) throws IOException {
+        return get(binary, codec).findIntervals(predicate);
+    }
+
+    /**
+     * Remove every cached table
+     */
+    public synchronized void clear() {
+        tables.clear();
+        sizeInBytes = 0;
+    }
+
+    /**
+     * Getter for hit count
+     * @return Number of lookups served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Getter for miss count
+     * @return Number of lookups that decoded the binary representation
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Getter for eviction count
+     * @return Number of tables evicted to respect the size limit
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Getter for size
+     * @return Estimated size in bytes of the cached tables and their keys
+     */
+    public synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Getter for entry count
+     * @return Number of cached tables
+     */
+    public synchronized int getEntryCount() {
+        return tables.size();
+    }
+
+    SegmentTable get(byte[] binary, Codec codec) throws IOException {
+        Key key = new Key(binary, codec);
+        synchronized (this) {
+            SegmentTable table = tables.get(key);
+            if (table != null) {
+                hitCount++;
+                return table;
+            }
+            missCount++;
+        }
+
+        // The cached key owns a copy, so callers reusing their array cannot change it, and the table is read from it
+        key = new Key(binary.clone(), codec);
+        SegmentTable table = codec.readSegmentTable(key.binary);
+        long entryBytes = table.getSizeInBytes() + binary.length;
+        if (entryBytes > maxBytes) return table;
+
+        synchronized (this) {
+            SegmentTable cached = tables.get(key);
+            if (cached != null) return cached;
+            tables.put(key, table);
+            sizeInBytes += entryBytes;
+            Iterator<Map.Entry<Key, SegmentTable>> iterator = tables.entrySet().iterator();
+            while (sizeInBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<Key, SegmentTable> eldest = iterator.next();
+                sizeInBytes -= eldest.getValue().getSizeInBytes() + eldest.getKey().binary.length;
+                iterator.remove();
+                evictionCount++;
+            }
+        }
+
+        return table;
+    }
+
+    private static class Key {
+        private final byte[] binary;
+        private final Codec codec;
+        private final int hash;
+
+        private Key(byte[] binary, Codec codec) {
+            this.binary = binary;
+            this.codec = codec;
+            this.hash = 31 * Arrays.hashCode(binary) + codec.getId();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && codec == other.codec && Arrays.equals(binary, other.binary);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
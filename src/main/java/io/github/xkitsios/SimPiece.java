@@ -1,20 +1,59 @@
 package io.github.xkitsios;
 
 import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.*;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Sim-Piece Algorithm for Compressing Time-Series Data
  */
 public class SimPiece {
-    private static ArrayList<SimPieceSegment> segments;
+    private SegmentStore segments;
 
-    private static double epsilon;
-    private static long lastTimeStamp;
+    private double epsilon;
+    private long lastTimeStamp;
+    private boolean exact;
+
+    private SimPiece(long[] timestamps, double[] values, int from, int to, double error) {
+        epsilon = error;
+        lastTimeStamp = timestamps[to - 1];
+        segments = mergePerB(compress(timestamps, values, from, to));
+    }
+
+    private SimPiece(SegmentTable table, double error) {
+        epsilon = error;
+        lastTimeStamp = table.getLastTimeStamp();
+        segments = mergePerB(compress(table, error - table.getEpsilon()));
+    }
+
+    private SimPiece(SegmentTable table) {
+        epsilon = table.getEpsilon();
+        lastTimeStamp = table.getLastTimeStamp();
+        segments = new SegmentStore(table.size());
+        for (int i = 0; i < table.size(); i++) segments.add(table.getInitTimestamp(i), table.getA(i), table.getB(i));
+        segments = mergePerB(segments);
+    }
+
+    private SimPiece(SegmentStore segments, long lastTimeStamp, double error) {
+        epsilon = error;
+        this.lastTimeStamp = lastTimeStamp;
+        this.segments = mergePerB(segments);
+    }
+
+    private SimPiece(ByteArrayInputStream inStream) throws IOException {
+        readByteArray(inStream);
+    }
 
     /**
      * Compress a list of Point and return a binary representation
@@ -24,12 +63,102 @@ public class SimPiece {
      * @throws Exception
      */
     public static byte[] compress(List<Point> points, double error) throws Exception {
-        if (points.isEmpty() || error <= 0) throw new Exception();
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(points, error, outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
 
-        epsilon = error;
-        lastTimeStamp = points.get(points.size() - 1).getTimestamp();
-        segments = mergePerB(compress(points));
-        return toByteArray();
+        return bytes;
+    }
+
+    /**
+     * Compress time-series columns and return a binary representation, without allocating per point
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(timestamps, values, 0, timestamps.length, error, outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    /**
+     * Compress a list of Points and return a binary representation in the given layout
+     * @param points Time-series data
+     * @param error Maximum absolute error
+     * @param encoding Layout of the segments
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(List<Point> points, double error, Encoding encoding) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        return compress(columns.getTimestamps(), columns.getValues(), error, encoding);
+    }
+
+    /**
+     * Compress time-series columns and return a binary representation in the given layout
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @param encoding Layout of the segments
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error, Encoding encoding) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(timestamps, values, 0, timestamps.length, error, encoding, outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    /**
+     * Compress in verify mode: every original point is checked against the segment the decoder will use for it,
+     * with the slopes and starting values as serialized, in one pass and without decompressing
+     * @param points Time-series data
+     * @param error Maximum absolute error
+     * @param stats Accumulator of the errors, which may also fail compression on the first error above its tolerance
+     * @return Binary representation
+     * @throws ErrorBoundException If an error exceeds the tolerance of stats
+     * @throws Exception
+     */
+    public static byte[] compress(List<Point> points, double error, ErrorStats stats) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        return compress(columns.getTimestamps(), columns.getValues(), error, stats);
+    }
+
+    /**
+     * Compress in verify mode: every original point is checked against the segment the decoder will use for it,
+     * with the slopes and starting values as serialized, in one pass and without decompressing
+     * @param timestamps Increasing timestamps
+     * @param values Values, aligned with timestamps
+     * @param error Maximum absolute error
+     * @param stats Accumulator of the errors, which may also fail compression on the first error above its tolerance
+     * @return Binary representation
+     * @throws ErrorBoundException If an error exceeds the tolerance of stats
+     * @throws Exception
+     */
+    public static byte[] compress(long[] timestamps, double[] values, double error, ErrorStats stats) throws Exception {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        compress(timestamps, values, 0, timestamps.length, error, outStream);
+        byte[] body = outStream.toByteArray();
+        outStream.close();
+        verify(body, timestamps, values, 0, timestamps.length, error, stats);
+
+        return Zstd.compress(body);
     }
 
     /**
@@ -39,178 +168,468 @@ public class SimPiece {
      * @throws IOException
      */
     public static List<Point> decompress(byte[] binary) throws IOException {
-        readByteArray(binary);
-        return toPoints();
+        return readSegmentTable(binary).toPoints();
+    }
+
+    /**
+     * Number of points a binary representation decompresses to
+     * @param binary Binary representation
+     * @return Number of points
+     * @throws IOException
+     */
+    public static int decompressedSize(byte[] binary) throws IOException {
+        return readSegmentTable(binary).getNumPoints();
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided arrays, without allocating per point
+     * @param binary Binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary) points
+     * @param values Output values, with room for decompressedSize(binary) points
+     * @return Number of points written
+     * @throws IOException
+     */
+    public static int decompressInto(byte[] binary, long[] timestamps, double[] values) throws IOException {
+        return readSegmentTable(binary).toArrays(timestamps, values);
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided arrays in parallel. The sections of the binary
+     * representation are parsed in order, then the time-sorted runs of segments are merged and disjoint ranges of
+     * segments are evaluated as tasks of pool.
+     * @param binary Binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary) points
+     * @param values Output values, with room for decompressedSize(binary) points
+     * @param pool Pool running the merge and evaluation tasks
+     * @return Number of points written
+     * @throws IOException
+     */
+    public static int decompressInto(byte[] binary, long[] timestamps, double[] values, ForkJoinPool pool) throws IOException {
+        return readByteArray(binary).toSegmentTable(pool).toArrays(timestamps, values, pool);
+    }
+
+    /**
+     * Decompress a binary representation into caller-provided buffers, starting at their current positions
+     * @param binary Binary representation
+     * @param timestamps Output timestamps, with room for decompressedSize(binary) points
+     * @param values Output values, with room for decompressedSize(binary) points
+     * @return Number of points written
+     * @throws IOException
+     */
+    public static int decompressInto(byte[] binary, LongBuffer timestamps, DoubleBuffer values) throws IOException {
+        return readSegmentTable(binary).toBuffers(timestamps, values);
+    }
+
+    /**
+     * Compress an already compressed time series again with a coarser maximum absolute error, working on its
+     * segments instead of its points. The result stays within error of the original data: it is within
+     * (error - previous error) of the previous reconstruction, which is within the previous error of the data.
+     * The result keeps the layout of binary. In the VARIABLE_BYTE layout slopes and starting values are stored as
+     * floats, so both bounds may be exceeded by their rounding, below a millionth of the magnitude of the values. The
+     * error recorded in the result is the new one, so rollups can be chained.
+     * @param binary Binary representation
+     * @param error New maximum absolute error, at least twice the one binary was compressed with
+     * @return Binary representation
+     * @throws Exception
+     */
+    public static byte[] recompress(byte[] binary, double error) throws Exception {
+        SegmentTable table = readSegmentTable(binary);
+        if (!(error >= 2 * table.getEpsilon()))
+            throw new IllegalArgumentException("New error " + error + " must be at least twice the previous error " + table.getEpsilon());
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        new SimPiece(table, error).toByteArray(encoding(table), outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    /**
+     * Compact binary representations of consecutive parts of one time series into a single one, merging their
+     * segments globally. Only segments are decoded and the result decompresses to the concatenated parts, in their
+     * layout.
+     * @param binaries Binary representations with the same error and layout, whose time ranges follow each other in
+     * any order
+     * @return Binary representation
+     * @throws IOException
+     */
+    public static byte[] compact(List<byte[]> binaries) throws IOException {
+        List<SegmentTable> tables = new ArrayList<>(binaries.size());
+        for (byte[] binary : binaries) tables.add(readSegmentTable(binary));
+
+        SegmentTable table = SegmentTable.concatenate(tables);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        new SimPiece(table).toByteArray(encoding(table), outStream);
+        byte[] bytes = Zstd.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    /**
+     * Compact the parts of several time series in parallel
+     * @param series Binary representations of the parts of each time series
+     * @return Binary representation of each time series
+     * @throws IOException
+     */
+    public static List<byte[]> compactAll(List<List<byte[]>> series) throws IOException {
+        byte[][] binaries = new byte[series.size()][];
+        try {
+            IntStream.range(0, series.size()).parallel().forEach(s -> {
+                try {
+                    binaries[s] = compact(series.get(s));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return Arrays.asList(binaries);
+    }
+
+    static void compress(List<Point> points, double error, ByteArrayOutputStream outStream) throws Exception {
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(points);
+        compress(columns.getTimestamps(), columns.getValues(), 0, columns.size(), error, outStream);
+    }
+
+    static void compress(long[] timestamps, double[] values, int from, int to, double error, ByteArrayOutputStream outStream) throws Exception {
+        compress(timestamps, values, from, to, error, Encoding.VARIABLE_BYTE, outStream);
+    }
+
+    static void compress(long[] timestamps, double[] values, int from, int to, double error, Encoding encoding, ByteArrayOutputStream outStream) throws Exception {
+        if (from >= to || error <= 0) throw new Exception();
+
+        new SimPiece(timestamps, values, from, to, error).toByteArray(encoding, outStream);
+    }
+
+    // Binary representation of segments built point by point elsewhere, exactly as createSegment builds them. The
+    // context is reused across calls, as creating one costs more than compressing a small blob
+    static byte[] compress(SegmentStore segments, long lastTimeStamp, double error, ZstdCompressCtx context) throws IOException {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        new SimPiece(segments, lastTimeStamp, error).toByteArray(outStream);
+        byte[] bytes = context.compress(outStream.toByteArray());
+        outStream.close();
+
+        return bytes;
+    }
+
+    static void verify(byte[] body, long[] timestamps, double[] values, int from, int to, double error, ErrorStats stats) throws IOException, ErrorBoundException {
+        new SimPiece(new ByteArrayInputStream(body)).toSegmentTable().verify(timestamps, values, from, to, error, stats);
+    }
+
+    static List<Point> decompress(ByteArrayInputStream inStream) throws IOException {
+        return new SimPiece(inStream).toSegmentTable().toPoints();
+    }
+
+    /**
+     * Find the time ranges where the original values satisfy a predicate, without decompressing points
+     * @param binary Binary representation
+     * @param predicate Value range to search for
+     * @return Disjoint intervals in time order, each either definitely or possibly matching
+     * @throws IOException
+     */
+    public static List<Interval> findIntervals(byte[] binary, ValuePredicate predicate) throws IOException {
+        return readSegmentTable(binary).findIntervals(predicate);
     }
 
-    private static double quantization(double value) {
+    static SegmentTable readSegmentTable(byte[] binary) throws IOException {
+        return readByteArray(binary).toSegmentTable();
+    }
+
+    private SegmentTable toSegmentTable(ForkJoinPool pool) {
+        return segments.toSegmentTable(lastTimeStamp, epsilon, exact, pool);
+    }
+
+    private SegmentTable toSegmentTable() {
+        return segments.toSegmentTable(lastTimeStamp, epsilon, exact);
+    }
+
+    private double quantization(double value) {
         return Math.round(value / epsilon) * epsilon;
     }
 
-    private static int createSegment(int startIdx, List<Point> points, ArrayList<SimPieceSegment> segments) {
-        long initTimestamp = points.get(startIdx).getTimestamp();
-        double b = quantization(points.get(startIdx).getValue());
-        if (startIdx + 1 == points.size()) {
-            segments.add(new SimPieceSegment(initTimestamp, -Double.MAX_VALUE, Double.MAX_VALUE, b));
+    private int createSegment(int startIdx, int endIdx, long[] timestamps, double[] values, SegmentStore segments) {
+        long initTimestamp = timestamps[startIdx];
+        double b = quantization(values[startIdx]);
+        if (startIdx + 1 == endIdx) {
+            segments.add(initTimestamp, -Double.MAX_VALUE, Double.MAX_VALUE, b);
             return startIdx + 1;
         }
-        double aMax = ((points.get(startIdx + 1).getValue() + epsilon) - b) / (points.get(startIdx + 1).getTimestamp() - initTimestamp);
-        double aMin = ((points.get(startIdx + 1).getValue() - epsilon) - b) / (points.get(startIdx + 1).getTimestamp() - initTimestamp);
-        if (startIdx + 2 == points.size()) {
-            segments.add(new SimPieceSegment(initTimestamp, aMin, aMax, b));
+        double aMax = ((values[startIdx + 1] + epsilon) - b) / (timestamps[startIdx + 1] - initTimestamp);
+        double aMin = ((values[startIdx + 1] - epsilon) - b) / (timestamps[startIdx + 1] - initTimestamp);
+        if (startIdx + 2 == endIdx) {
+            segments.add(initTimestamp, aMin, aMax, b);
             return startIdx + 2;
         }
 
-        for (int idx = startIdx + 2; idx < points.size(); idx++) {
-            double upValue = points.get(idx).getValue() + epsilon;
-            double downValue = points.get(idx).getValue() - epsilon;
+        for (int idx = startIdx + 2; idx < endIdx; idx++) {
+            double upValue = values[idx] + epsilon;
+            double downValue = values[idx] - epsilon;
 
-            double upLim = aMax * (points.get(idx).getTimestamp() - initTimestamp) + b;
-            double downLim = aMin * (points.get(idx).getTimestamp() - initTimestamp) + b;
+            double upLim = aMax * (timestamps[idx] - initTimestamp) + b;
+            double downLim = aMin * (timestamps[idx] - initTimestamp) + b;
             if ((downValue > upLim || upValue < downLim)) {
-                segments.add(new SimPieceSegment(initTimestamp, aMin, aMax, b));
+                segments.add(initTimestamp, aMin, aMax, b);
                 return idx;
             }
 
             if (upValue < upLim)
-                aMax = Math.max((upValue - b) / (points.get(idx).getTimestamp() - initTimestamp), aMin);
+                aMax = Math.max((upValue - b) / (timestamps[idx] - initTimestamp), aMin);
             if (downValue > downLim)
-                aMin = Math.min((downValue - b) / (points.get(idx).getTimestamp() - initTimestamp), aMax);
+                aMin = Math.min((downValue - b) / (timestamps[idx] - initTimestamp), aMax);
+        }
+        segments.add(initTimestamp, aMin, aMax, b);
+
+        return endIdx;
+    }
+
+    private SegmentStore compress(long[] timestamps, double[] values, int from, int to) {
+        SegmentStore segments = new SegmentStore();
+        int currentIdx = from;
+        while (currentIdx < to) currentIdx = createSegment(currentIdx, to, timestamps, values, segments);
+
+        return segments;
+    }
+
+    // Like createSegment over points, constraining the first and last timestamp of each segment of table. New segments
+    // only end where a segment of table ends, so in between both reconstructions are linear and stay within tolerance
+    private int createSegment(int startIdx, SegmentTable table, SegmentStore segments, double tolerance, double b) {
+        long initTimestamp = table.getInitTimestamp(startIdx);
+        double aMin = -Double.MAX_VALUE;
+        double aMax = Double.MAX_VALUE;
+
+        for (int idx = startIdx; idx < table.size(); idx++) {
+            long[] timestamps = {table.getInitTimestamp(idx), table.getEndTimestamp(idx)};
+            if (timestamps[1] < timestamps[0]) continue;
+            double aMinTemp = aMin;
+            double aMaxTemp = aMax;
+            for (long timestamp : timestamps) {
+                if (timestamp == initTimestamp) continue;
+                double value = table.value(idx, timestamp);
+                aMaxTemp = Math.min(aMaxTemp, (value + tolerance - b) / (timestamp - initTimestamp));
+                aMinTemp = Math.max(aMinTemp, (value - tolerance - b) / (timestamp - initTimestamp));
+            }
+            if (aMinTemp > aMaxTemp) {
+                segments.add(initTimestamp, aMin, aMax, b);
+                return idx;
+            }
+            aMin = aMinTemp;
+            aMax = aMaxTemp;
         }
-        segments.add(new SimPieceSegment(initTimestamp, aMin, aMax, b));
+        segments.add(initTimestamp, aMin, aMax, b);
 
-        return points.size();
+        return table.size();
     }
 
-    private static ArrayList<SimPieceSegment> compress(List<Point> points) {
-        ArrayList<SimPieceSegment> segments = new ArrayList<>();
+    private SegmentStore compress(SegmentTable table, double tolerance) {
+        SegmentStore segments = new SegmentStore();
         int currentIdx = 0;
-        while (currentIdx < points.size()) currentIdx = createSegment(currentIdx, points, segments);
+        while (currentIdx < table.size()) {
+            if (table.getEndTimestamp(currentIdx) < table.getInitTimestamp(currentIdx)) {
+                currentIdx++;
+                continue;
+            }
+            double b = quantization(table.getB(currentIdx));
+            currentIdx = createSegment(currentIdx, table, segments, tolerance, b);
+        }
 
         return segments;
     }
 
-    private static ArrayList<SimPieceSegment> mergePerB(ArrayList<SimPieceSegment> segments) {
+    private static SegmentStore mergePerB(SegmentStore segments) {
         double aMinTemp = -Double.MAX_VALUE;
         double aMaxTemp = Double.MAX_VALUE;
         double b = Double.NaN;
-        ArrayList<Long> timestamps = new ArrayList<>();
-        ArrayList<SimPieceSegment> mergedSegments = new ArrayList<>();
+        int groupStart = 0;
 
-        segments.sort(Comparator.comparingDouble(SimPieceSegment::getB).thenComparingDouble(SimPieceSegment::getA));
+        segments.sort((i, j) -> {
+            int compare = Double.compare(segments.getB(i), segments.getB(j));
+            return compare != 0 ? compare : Double.compare(segments.getA(i), segments.getA(j));
+        });
         for (int i = 0; i < segments.size(); i++) {
-            if (b != segments.get(i).getB()) {
-                if (timestamps.size() == 1)
-                    mergedSegments.add(new SimPieceSegment(timestamps.get(0), aMinTemp, aMaxTemp, b));
-                else {
-                    for (Long timestamp : timestamps)
-                        mergedSegments.add(new SimPieceSegment(timestamp, aMinTemp, aMaxTemp, b));
-                }
-                timestamps.clear();
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = segments.get(i).getAMin();
-                aMaxTemp = segments.get(i).getAMax();
-                b = segments.get(i).getB();
+            if (b != segments.getB(i)) {
+                setGroup(segments, groupStart, i, aMinTemp, aMaxTemp);
+                groupStart = i;
+                aMinTemp = segments.getAMin(i);
+                aMaxTemp = segments.getAMax(i);
+                b = segments.getB(i);
                 continue;
             }
-            if (segments.get(i).getAMin() <= aMaxTemp && segments.get(i).getAMax() >= aMinTemp) {
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = Math.max(aMinTemp, segments.get(i).getAMin());
-                aMaxTemp = Math.min(aMaxTemp, segments.get(i).getAMax());
+            if (segments.getAMin(i) <= aMaxTemp && segments.getAMax(i) >= aMinTemp) {
+                aMinTemp = Math.max(aMinTemp, segments.getAMin(i));
+                aMaxTemp = Math.min(aMaxTemp, segments.getAMax(i));
             } else {
-                if (timestamps.size() == 1) mergedSegments.add(segments.get(i - 1));
-                else {
-                    for (long timestamp : timestamps)
-                        mergedSegments.add(new SimPieceSegment(timestamp, aMinTemp, aMaxTemp, b));
-                }
-                timestamps.clear();
-                timestamps.add(segments.get(i).getInitTimestamp());
-                aMinTemp = segments.get(i).getAMin();
-                aMaxTemp = segments.get(i).getAMax();
-            }
-        }
-        if (!timestamps.isEmpty()) {
-            if (timestamps.size() == 1)
-                mergedSegments.add(new SimPieceSegment(timestamps.get(0), aMinTemp, aMaxTemp, b));
-            else {
-                for (long timestamp : timestamps)
-                    mergedSegments.add(new SimPieceSegment(timestamp, aMinTemp, aMaxTemp, b));
+                setGroup(segments, groupStart, i, aMinTemp, aMaxTemp);
+                groupStart = i;
+                aMinTemp = segments.getAMin(i);
+                aMaxTemp = segments.getAMax(i);
             }
         }
+        setGroup(segments, groupStart, segments.size(), aMinTemp, aMaxTemp);
 
-        return mergedSegments;
+        return segments;
     }
 
-    private static List<Point> toPoints() {
-        segments.sort(Comparator.comparingLong(SimPieceSegment::getInitTimestamp));
-        List<Point> points = new ArrayList<>();
-        long currentTimeStamp = segments.get(0).getInitTimestamp();
-
-
-        for (int i = 0; i < segments.size() - 1; i++) {
-            while (currentTimeStamp < segments.get(i + 1).getInitTimestamp()) {
-                points.add(new Point(currentTimeStamp, segments.get(i).getA() * (currentTimeStamp - segments.get(i).getInitTimestamp()) + segments.get(i).getB()));
-                currentTimeStamp++;
-            }
-        }
-
-        while (currentTimeStamp <= lastTimeStamp) {
-            points.add(new Point(currentTimeStamp, segments.get(segments.size() - 1).getA() * (currentTimeStamp - segments.get(segments.size() - 1).getInitTimestamp()) + segments.get(segments.size() - 1).getB()));
-            currentTimeStamp++;
-        }
-
-        return points;
+    private static void setGroup(SegmentStore segments, int from, int to, double aMin, double aMax) {
+        for (int j = from; j < to; j++) segments.set(j, segments.getInitTimestamp(j), aMin, aMax, segments.getB(j));
     }
 
-    private static void toByteArrayPerBSegments(ArrayList<SimPieceSegment> segments, ByteArrayOutputStream outStream) throws IOException {
-        TreeMap<Integer, HashMap<Double, ArrayList<Long>>> input = new TreeMap<>();
-        for (SimPieceSegment segment : segments) {
-            double a = segment.getA();
-            int b = (int) Math.round(segment.getB() / epsilon);
-            long t = segment.getInitTimestamp();
-            if (!input.containsKey(b)) input.put(b, new HashMap<>());
-            if (!input.get(b).containsKey(a)) input.get(b).put(a, new ArrayList<>());
-            input.get(b).get(a).add(t);
-        }
+    private void toByteArrayPerBSegments(SegmentStore segments, ByteArrayOutputStream outStream) throws IOException {
+        segments.sort((i, j) -> {
+            int compare = Long.compare(Math.round(segments.getB(i) / epsilon), Math.round(segments.getB(j) / epsilon));
+            if (compare == 0) compare = Double.compare(segments.getA(i), segments.getA(j));
+            return compare != 0 ? compare : Long.compare(segments.getInitTimestamp(i), segments.getInitTimestamp(j));
+        });
 
-        VariableByteEncoder.write(input.size(), outStream);
-        if (input.isEmpty()) return;
-        int previousB = input.firstKey();
+        int numB = 0;
+        for (int i = 0; i < segments.size(); i++)
+            if (i == 0 || bKey(segments, i) != bKey(segments, i - 1)) numB++;
+
+        VariableByteEncoder.write(numB, outStream);
+        if (numB == 0) return;
+        int previousB = bKey(segments, 0);
         VariableByteEncoder.write(previousB, outStream);
-        for (Map.Entry<Integer, HashMap<Double, ArrayList<Long>>> bSegments : input.entrySet()) {
-            VariableByteEncoder.write(bSegments.getKey() - previousB, outStream);
-            previousB = bSegments.getKey();
-            VariableByteEncoder.write(bSegments.getValue().size(), outStream);
-            for (Map.Entry<Double, ArrayList<Long>> aSegment : bSegments.getValue().entrySet()) {
-                FloatEncoder.write(aSegment.getKey().floatValue(), outStream);
-                Collections.sort(aSegment.getValue());
-                VariableByteEncoder.write(aSegment.getValue().size(), outStream);
+        int bStart = 0;
+        while (bStart < segments.size()) {
+            int b = bKey(segments, bStart);
+            int bEnd = bStart;
+            int numA = 0;
+            while (bEnd < segments.size() && bKey(segments, bEnd) == b) {
+                if (bEnd == bStart || Double.compare(segments.getA(bEnd), segments.getA(bEnd - 1)) != 0) numA++;
+                bEnd++;
+            }
+            VariableByteEncoder.write(b - previousB, outStream);
+            previousB = b;
+            VariableByteEncoder.write(numA, outStream);
+
+            int aStart = bStart;
+            while (aStart < bEnd) {
+                int aEnd = aStart + 1;
+                while (aEnd < bEnd && Double.compare(segments.getA(aEnd), segments.getA(aStart)) == 0) aEnd++;
+                FloatEncoder.write((float) segments.getA(aStart), outStream);
+                VariableByteEncoder.write(aEnd - aStart, outStream);
                 long previousTS = 0;
-                for (Long timestamp : aSegment.getValue()) {
-                    VariableByteEncoder.write((int) (timestamp - previousTS), outStream);
-                    previousTS = timestamp;
+                for (int i = aStart; i < aEnd; i++) {
+                    VariableByteEncoder.write((int) (segments.getInitTimestamp(i) - previousTS), outStream);
+                    previousTS = segments.getInitTimestamp(i);
                 }
+                aStart = aEnd;
             }
+            bStart = bEnd;
         }
     }
 
+    private int bKey(SegmentStore segments, int i) {
+        return (int) Math.round(segments.getB(i) / epsilon);
+    }
 
-    private static byte[] toByteArray() throws IOException {
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        byte[] bytes;
+    // Tables read back from either layout are exact only if they were BIT_PACKED, which rewrites keep
+    private static Encoding encoding(SegmentTable table) {
+        return table.isExact() ? Encoding.BIT_PACKED : Encoding.VARIABLE_BYTE;
+    }
 
+    private void toByteArray(Encoding encoding, ByteArrayOutputStream outStream) throws IOException {
+        if (encoding == Encoding.BIT_PACKED) toPackedByteArray(outStream);
+        else toByteArray(outStream);
+    }
+
+    private void toByteArray(ByteArrayOutputStream outStream) throws IOException {
         FloatEncoder.write((float) epsilon, outStream);
         toByteArrayPerBSegments(segments, outStream);
         VariableByteEncoder.write((int) lastTimeStamp, outStream);
-        bytes = Zstd.compress(outStream.toByteArray());
+    }
 
-        outStream.close();
+    // Same grouping as toByteArrayPerBSegments, with the integers in bit-packed columns and exact slopes and
+    // starting values. A negative leading epsilon marks the layout for readByteArray
+    private void toPackedByteArray(ByteArrayOutputStream outStream) throws IOException {
+        FloatEncoder.write((float) -epsilon, outStream);
+        LongEncoder.write(Double.doubleToLongBits(epsilon), outStream);
+        LongEncoder.write(lastTimeStamp, outStream);
 
-        return bytes;
+        for (int i = 0; i < segments.size(); i++) {
+            double a = SlopeEncoder.quantize(segments.getAMin(i), segments.getAMax(i));
+            segments.set(i, segments.getInitTimestamp(i), a, a, segments.getB(i));
+        }
+        segments.sort((i, j) -> {
+            int compare = Long.compare(Math.round(segments.getB(i) / epsilon), Math.round(segments.getB(j) / epsilon));
+            if (compare == 0) compare = Double.compare(segments.getA(i), segments.getA(j));
+            return compare != 0 ? compare : Long.compare(segments.getInitTimestamp(i), segments.getInitTimestamp(j));
+        });
+
+        PackedLongs counts = new PackedLongs();
+        PackedLongs bs = new PackedLongs();
+        PackedLongs exponents = new PackedLongs();
+        PackedLongs mantissas = new PackedLongs();
+        PackedLongs deltas = new PackedLongs();
+        long previousB = 0;
+        int bStart = 0;
+        while (bStart < segments.size()) {
+            long b = Math.round(segments.getB(bStart) / epsilon);
+            int bEnd = bStart;
+            int numA = 0;
+            while (bEnd < segments.size() && Math.round(segments.getB(bEnd) / epsilon) == b) {
+                if (bEnd == bStart || Double.compare(segments.getA(bEnd), segments.getA(bEnd - 1)) != 0) numA++;
+                bEnd++;
+            }
+            bs.addSigned(b - previousB);
+            previousB = b;
+            counts.add(numA);
+
+            int aStart = bStart;
+            while (aStart < bEnd) {
+                int aEnd = aStart + 1;
+                while (aEnd < bEnd && Double.compare(segments.getA(aEnd), segments.getA(aStart)) == 0) aEnd++;
+                SlopeEncoder.write(segments.getA(aStart), exponents, mantissas);
+                counts.add(aEnd - aStart);
+                long previousTS = 0;
+                for (int i = aStart; i < aEnd; i++) {
+                    deltas.add(segments.getInitTimestamp(i) - previousTS);
+                    previousTS = segments.getInitTimestamp(i);
+                }
+                aStart = aEnd;
+            }
+            bStart = bEnd;
+        }
+
+        bs.write(outStream);
+        counts.write(outStream);
+        exponents.write(outStream);
+        mantissas.write(outStream);
+        deltas.write(outStream);
+    }
+
+    private void readPackedByteArray(ByteArrayInputStream inStream) throws IOException {
+        exact = true;
+        epsilon = Double.longBitsToDouble(LongEncoder.read(inStream));
+        lastTimeStamp = LongEncoder.read(inStream);
+        PackedLongs bs = PackedLongs.read(inStream);
+        PackedLongs counts = PackedLongs.read(inStream);
+        PackedLongs exponents = PackedLongs.read(inStream);
+        PackedLongs mantissas = PackedLongs.read(inStream);
+        PackedLongs deltas = PackedLongs.read(inStream);
+
+        segments = new SegmentStore(deltas.size());
+        long b = 0;
+        for (int i = 0; i < bs.size(); i++) {
+            b += bs.nextSigned();
+            long numA = counts.next();
+            for (long j = 0; j < numA; j++) {
+                double a = SlopeEncoder.read(exponents, mantissas);
+                long numTimestamps = counts.next();
+                long timestamp = 0;
+                for (long k = 0; k < numTimestamps; k++) {
+                    timestamp += deltas.next();
+                    segments.add(timestamp, a, b * epsilon);
+                }
+            }
+        }
     }
 
-    private static ArrayList<SimPieceSegment> readMergedPerBSegments(ByteArrayInputStream inStream) throws IOException {
-        ArrayList<SimPieceSegment> segments = new ArrayList<>();
+    private SegmentStore readMergedPerBSegments(ByteArrayInputStream inStream) throws IOException {
+        SegmentStore segments = new SegmentStore();
         long numB = VariableByteEncoder.read(inStream);
         if (numB == 0) return segments;
         int previousB = VariableByteEncoder.read(inStream);
@@ -224,7 +643,7 @@ public class SimPiece {
                 long timestamp = 0;
                 for (int k = 0; k < numTimestamps; k++) {
                     timestamp += VariableByteEncoder.read(inStream);
-                    segments.add(new SimPieceSegment(timestamp, a, (float) (b * epsilon)));
+                    segments.add(timestamp, a, (float) (b * epsilon));
                 }
             }
         }
@@ -232,13 +651,24 @@ public class SimPiece {
         return segments;
     }
 
-    private static void readByteArray(byte[] input) throws IOException {
-        byte[] binary = Zstd.decompress(input, input.length * 2); //TODO: How to know apriori original size?
+    private static SimPiece readByteArray(byte[] input) throws IOException {
+        long size = Zstd.decompressedSize(input);
+        byte[] binary = Zstd.decompress(input, size > 0 ? (int) size : input.length * 2);
         ByteArrayInputStream inStream = new ByteArrayInputStream(binary);
 
+        SimPiece simPiece = new SimPiece(inStream);
+        inStream.close();
+
+        return simPiece;
+    }
+
+    private void readByteArray(ByteArrayInputStream inStream) throws IOException {
         epsilon = FloatEncoder.read(inStream);
+        if (Float.floatToRawIntBits((float) epsilon) < 0) {
+            readPackedByteArray(inStream);
+            return;
+        }
         segments = readMergedPerBSegments(inStream);
         lastTimeStamp = VariableByteEncoder.read(inStream);
-        inStream.close();
     }
 }
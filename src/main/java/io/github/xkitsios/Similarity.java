@@ -0,0 +1,161 @@
+package io.github.xkitsios;
+
+import java.io.IOException;
+
+/**
+ * Dot product, Euclidean distance and Pearson correlation of two compressed time series over the timestamps both
+ * cover, computed from their segments without decompressing points. Every overlap of a segment of one series with a
+ * segment of the other is linear in both, so it contributes in closed form and the cost is linear in the number of
+ * segments. The bounds of each estimate hold for the original data as long as each reconstruction is within the
+ * error recorded in its binary representation.
+ */
+public class Similarity {
+    private Similarity() {
+    }
+
+    /**
+     * Dot product over the timestamps both series cover
+     * @param binaryA Binary representation of the first series
+     * @param codecA Algorithm that produced the first binary representation
+     * @param binaryB Binary representation of the second series
+     * @param codecB Algorithm that produced the second binary representation
+     * @return Dot product with bounds
+     * @throws IOException
+     */
+    public static Estimate dot(byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB) throws IOException {
+        return dot(binaryA, codecA, binaryB, codecB, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Dot product over the timestamps of [from, to] both series cover
+     * @param binaryA Binary representation of the first series
+     * @param codecA Algorithm that produced the first binary representation
+     * @param binaryB Binary representation of the second series
+     * @param codecB Algorithm that produced the second binary representation
+     * @param from First timestamp (inclusive)
+     * @param to Last timestamp (inclusive)
+     * @return Dot product with bounds
+     * @throws IOException
+     */
+    public static Estimate dot(byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB, long from, long to) throws IOException {
+        return dot(codecA.readSegmentTable(binaryA), codecB.readSegmentTable(binaryB), from, to);
+    }
+
+    /**
+     * Euclidean distance over the timestamps both series cover
+     * @param binaryA Binary representation of the first series
+     * @param codecA Algorithm that produced the first binary representation
+     * @param binaryB Binary representation of the second series
+     * @param codecB Algorithm that produced the second binary representation
+     * @return Euclidean distance with bounds
+     * @throws IOException
+     */
+    public static Estimate distance(byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB) throws IOException {
+        return distance(binaryA, codecA, binaryB, codecB, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Euclidean distance over the timestamps of [from, to] both series cover
+     * @param binaryA Binary representation of the first series
+     * @param codecA Algorithm that produced the first binary representation
+     * @param binaryB Binary representation of the second series
+     * @param codecB Algorithm that produced the second binary representation
+     * @param from First timestamp (inclusive)
+     * @param to Last timestamp (inclusive)
+     * @return Euclidean distance with bounds
+     * @throws IOException
+     */
+    public static Estimate distance(byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB, long from, long to) throws IOException {
+        return distance(codecA.readSegmentTable(binaryA), codecB.readSegmentTable(binaryB), from, to);
+    }
+
+    /**
+     * Pearson correlation over the timestamps both series cover
+     * @param binaryA Binary representation of the first series
+     * @param codecA Algorithm that produced the first binary representation
+     * @param binaryB Binary representation of the second series
+     * @param codecB Algorithm that produced the second binary representation
+     * @return Pearson correlation with bounds, or NaN within [-1, 1] if a reconstruction is constant
+     * @throws IOException
+     */
+    public static Estimate correlation(byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB) throws IOException {
+        return correlation(binaryA, codecA, binaryB, codecB, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Pearson correlation over the timestamps of [from, to] both series cover
+     * @param binaryA Binary representation of the first series
+     * @param codecA Algorithm that produced the first binary representation
+     * @param binaryB Binary representation of the second series
+     * @param codecB Algorithm that produced the second binary representation
+     * @param from First timestamp (inclusive)
+     * @param to Last timestamp (inclusive)
+     * @return Pearson correlation with bounds, or NaN within [-1, 1] if a reconstruction is constant
+     * @throws IOException
+     */
+    public static Estimate correlation(byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB, long from, long to) throws IOException {
+        return correlation(codecA.readSegmentTable(binaryA), codecB.readSegmentTable(binaryB), from, to);
+    }
+
+    // With x = x' + dx and |dx| <= epsilonX per point, |<x, y> - <x', y'>| <= |<x', dy>| + |<dx, y'>| + |<dx, dy>|,
+    // each bounded by Cauchy-Schwarz
+    static Estimate dot(SegmentTable x, SegmentTable y, long from, long to) {
+        Moments moments = moments(x, y, from, to);
+        double rootN = Math.sqrt(moments.getCount());
+        double bound = y.getEpsilon() * Math.sqrt(moments.squaredNormX()) * rootN
+                + x.getEpsilon() * Math.sqrt(moments.squaredNormY()) * rootN
+                + moments.getCount() * x.getEpsilon() * y.getEpsilon();
+        double value = moments.dot();
+
+        return new Estimate(value, value - bound, value + bound);
+    }
+
+    // By the triangle inequality the distance moves by at most the norm of dx - dy
+    static Estimate distance(SegmentTable x, SegmentTable y, long from, long to) {
+        Moments moments = moments(x, y, from, to);
+        double bound = (x.getEpsilon() + y.getEpsilon()) * Math.sqrt(moments.getCount());
+        double value = Math.sqrt(moments.squaredDistance());
+
+        return new Estimate(value, Math.max(0, value - bound), value + bound);
+    }
+
+    // The correlation is the cosine of the angle between the centered series. Centering does not lengthen dx, and
+    // adding dx to a vector u turns it by at most asin(|dx| / |u|), so the angle moves by at most the sum of both turns
+    static Estimate correlation(SegmentTable x, SegmentTable y, long from, long to) {
+        Moments moments = moments(x, y, from, to);
+        double normX = Math.sqrt(moments.getCxx());
+        double normY = Math.sqrt(moments.getCyy());
+        if (normX == 0 || normY == 0) return new Estimate(Double.NaN, -1, 1);
+
+        double value = Math.max(-1, Math.min(1, moments.getCxy() / (normX * normY)));
+        double rootN = Math.sqrt(moments.getCount());
+        double turn = turn(x.getEpsilon() * rootN, normX) + turn(y.getEpsilon() * rootN, normY);
+        double angle = Math.acos(value);
+
+        return new Estimate(value, Math.cos(Math.min(Math.PI, angle + turn)), Math.cos(Math.max(0, angle - turn)));
+    }
+
+    private static double turn(double perturbation, double norm) {
+        return perturbation < norm ? Math.asin(perturbation / norm) : Math.PI;
+    }
+
+    // Sweeps both tables over the timestamps of [from, to] they both cover, one overlap of segments at a time
+    private static Moments moments(SegmentTable x, SegmentTable y, long from, long to) {
+        long start = Math.max(from, Math.max(x.getInitTimestamp(0), y.getInitTimestamp(0)));
+        long end = Math.min(to, Math.min(x.getEndTimestamp(x.size() - 1), y.getEndTimestamp(y.size() - 1)));
+        if (start > end) throw new IllegalArgumentException("Time series do not overlap in [" + from + ", " + to + "]");
+
+        Moments moments = new Moments();
+        int i = 0;
+        int j = 0;
+        for (long t = start; t <= end; ) {
+            while (x.getEndTimestamp(i) < t) i++;
+            while (y.getEndTimestamp(j) < t) j++;
+            long overlapEnd = Math.min(end, Math.min(x.getEndTimestamp(i), y.getEndTimestamp(j)));
+            moments.addLines(overlapEnd - t + 1, x.value(i, t), x.getA(i), y.value(j, t), y.getA(j));
+            t = overlapEnd + 1;
+        }
+
+        return moments;
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.xkitsios;
+
+import java.io.IOException;
+
+/*
+ * Slopes as exact doubles mantissa * 2^exponent, with the mantissa odd or zero. Any slope inside the cone
+ * [aMin, aMax] of a segment keeps its points within epsilon, so quantize picks the one with the fewest significant
+ * bits: a multiple of the largest power of two not above the width of the cone. The width is about
+ * 2 * epsilon / segment length, so longer segments and smaller errors get finer slopes.
+ */
+final class SlopeEncoder {
+    private SlopeEncoder() {
+    }
+
+    static double quantize(double aMin, double aMax) {
+        if (aMin <= 0 && aMax >= 0) return 0;
+        double middle = (aMin + aMax) / 2;
+        double width = aMax - aMin;
+        if (!(width > 0) || Double.isInfinite(width)) return middle;
+
+        double step = Math.scalb(1.0, Math.getExponent(width));
+        if (step > width || step < Double.MIN_NORMAL) return middle;
+        double a = aMin > 0 ? Math.ceil(aMin / step) * step : Math.floor(aMax / step) * step;
+
+        return a >= aMin && a <= aMax ? a : middle;
+    }
+
+    static void write(double a, PackedLongs exponents, PackedLongs mantissas) {
+        if (a == 0) {
+            exponents.addSigned(0);
+            mantissas.addSigned(0);
+            return;
+        }
+        long bits = Double.doubleToRawLongBits(a);
+        int biasedExponent = (int) ((bits >>> 52) & 0x7FF);
+        long mantissa = bits & 0xFFFFFFFFFFFFFL;
+        if (biasedExponent == 0) biasedExponent = 1;
+        else mantissa |= 1L << 52;
+        int shift = Long.numberOfTrailingZeros(mantissa);
+
+        exponents.addSigned(biasedExponent - 1075 + shift);
+        mantissas.addSigned(a < 0 ? -(mantissa >>> shift) : mantissa >>> shift);
+    }
+
+    static double read(PackedLongs exponents, PackedLongs mantissas) throws IOException {
+        int exponent = (int) exponents.nextSigned();
+        long mantissa = mantissas.nextSigned();
+
+        return Math.scalb((double) mantissa, exponent);
+    }
+}
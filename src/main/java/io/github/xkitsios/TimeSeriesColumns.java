@@ -0,0 +1,109 @@
+package io.github.xkitsios;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time-series data held as primitive timestamp and value columns, with the minimum and maximum value
+ */
+public class TimeSeriesColumns {
+    private final long[] timestamps;
+    private final double[] values;
+    private final double min;
+    private final double max;
+
+    /**
+     * Constructor for TimeSeriesColumns
+     * @param timestamps Timestamps
+     * @param values Values, aligned with timestamps
+     * @param min Minimum value
+     * @param max Maximum value
+     */
+    public TimeSeriesColumns(long[] timestamps, double[] values, double min, double max) {
+        if (timestamps.length != values.length)
+            throw new IllegalArgumentException("Expected " + timestamps.length + " values but got " + values.length);
+        this.timestamps = timestamps;
+        this.values = values;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Convert a list of Points
+     * @param points Time-series data
+     * @return Time-series data as columns
+     */
+    public static TimeSeriesColumns fromPoints(List<Point> points) {
+        long[] timestamps = new long[points.size()];
+        double[] values = new double[points.size()];
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < points.size(); i++) {
+            timestamps[i] = points.get(i).getTimestamp();
+            values[i] = points.get(i).getValue();
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        return new TimeSeriesColumns(timestamps, values, min, max);
+    }
+
+    /**
+     * Getter for timestamps
+     * @return Timestamps
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * Getter for values
+     * @return Values, aligned with timestamps
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Number of points
+     * @return Number of points
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    /**
+     * Getter for min
+     * @return Minimum value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Getter for max
+     * @return Maximum value
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Difference between the maximum and the minimum value
+     * @return Range
+     */
+    public double getRange() {
+        return max - min;
+    }
+
+    /**
+     * Convert to a list of Points
+     * @return Time-series data
+     */
+    public List<Point> toPoints() {
+        List<Point> points = new ArrayList<>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) points.add(new Point(timestamps[i], values[i]));
+
+        return points;
+    }
+}
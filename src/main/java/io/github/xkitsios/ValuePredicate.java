@@ -0,0 +1,65 @@
+package io.github.xkitsios;
+
+/**
+ * A closed value range [lower, upper] used to search compressed time series
+ */
+public class ValuePredicate {
+    private final double lower;
+    private final double upper;
+
+    /**
+     * Constructor for ValuePredicate
+     * @param lower Lower bound (inclusive)
+     * @param upper Upper bound (inclusive)
+     */
+    public ValuePredicate(double lower, double upper) {
+        if (Double.isNaN(lower) || Double.isNaN(upper) || lower > upper)
+            throw new IllegalArgumentException("Invalid range [" + lower + ", " + upper + "]");
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * Predicate matching values greater than or equal to a threshold
+     * @param threshold Threshold
+     * @return ValuePredicate
+     */
+    public static ValuePredicate atLeast(double threshold) {
+        return new ValuePredicate(threshold, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Predicate matching values less than or equal to a threshold
+     * @param threshold Threshold
+     * @return ValuePredicate
+     */
+    public static ValuePredicate atMost(double threshold) {
+        return new ValuePredicate(Double.NEGATIVE_INFINITY, threshold);
+    }
+
+    /**
+     * Predicate matching values in [lower, upper]
+     * @param lower Lower bound (inclusive)
+     * @param upper Upper bound (inclusive)
+     * @return ValuePredicate
+     */
+    public static ValuePredicate between(double lower, double upper) {
+        return new ValuePredicate(lower, upper);
+    }
+
+    /**
+     * Getter for lower bound
+     * @return Lower bound
+     */
+    public double getLower() {
+        return lower;
+    }
+
+    /**
+     * Getter for upper bound
+     * @return Upper bound
+     */
+    public double getUpper() {
+        return upper;
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBlocks {
+    private void check(List<Point> ts, List<Point> decompressed, double epsilon) {
+        int idx = 0;
+        for (Point expected : decompressed) {
+            if (idx == ts.size()) break;
+            Point actual = ts.get(idx);
+            if (expected.getTimestamp() != actual.getTimestamp()) continue;
+            idx++;
+            assertEquals(actual.getValue(), expected.getValue(), 1.1 * epsilon, "Value did not match for timestamp " + actual.getTimestamp());
+        }
+        assertEquals(ts.size(), idx);
+    }
+
+    @Test
+    public void TestBlockFramedStream() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/Lightning.csv.gz", "/BTCUSD.csv.gz"};
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            double epsilon = ts.range * 0.01;
+            for (Codec codec : Codec.values()) {
+                ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+                BlockWriter.compress(ts.data, epsilon, codec, 10000, outStream);
+                byte[] binary = outStream.toByteArray();
+
+                List<Point> decompressed = new ArrayList<>();
+                List<Integer> blockSizes = new ArrayList<>();
+                BlockReader.decompress(new ByteArrayInputStream(binary), block -> {
+                    decompressed.addAll(block);
+                    blockSizes.add(block.size());
+                });
+                assertEquals((ts.data.size() + 9999) / 10000, blockSizes.size());
+                for (int blockSize : blockSizes) assertTrue(blockSize <= 10000);
+                check(ts.data, decompressed, epsilon);
+
+                List<Point> fromChannel = new ArrayList<>();
+                BlockReader.decompress(Channels.newChannel(new ByteArrayInputStream(binary)), fromChannel::addAll);
+                assertEquals(decompressed.size(), fromChannel.size());
+            }
+        }
+    }
+
+    @Test
+    public void TestCodecIds() throws Exception {
+        int[] ids = {0, 1, 2};
+        Codec[] codecs = {Codec.SIM_PIECE, Codec.MIX_PIECE, Codec.QUANTIZED_DELTA};
+        for (int k = 0; k < ids.length; k++) {
+            assertEquals(ids[k], codecs[k].getId());
+            assertEquals(codecs[k], Codec.fromId(ids[k]));
+        }
+        assertThrows(IOException.class, () -> Codec.fromId(255));
+
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        try (DataOutputStream dataStream = new DataOutputStream(new ZstdOutputStream(outStream))) {
+            dataStream.writeByte(255);
+            dataStream.writeInt(0);
+        }
+        try (BlockReader reader = new BlockReader(new ByteArrayInputStream(outStream.toByteArray()))) {
+            assertThrows(IOException.class, reader::readBlock);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.xkitsios;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCli {
+    private int run(ByteArrayOutputStream out, String... args) {
+        return Cli.run(args, new PrintStream(out, true), new PrintStream(new ByteArrayOutputStream(), true));
+    }
+
+    @Test
+    public void TestCompressDecompress(@TempDir Path dir) throws Exception {
+        String[] filenames = {"FaceFour.csv.gz", "MoteStrain.csv.gz", "ETHUSD.csv.gz"};
+        for (String filename : filenames)
+            try (InputStream inputStream = getClass().getResourceAsStream("/" + filename)) {
+                Files.copy(inputStream, dir.resolve(filename));
+            }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, run(out, "compress", "--error-pct", "1", "--threads", "2", "--block-size", "10000", dir.toString()));
+        assertEquals(filenames.length, out.toString(StandardCharsets.UTF_8.name()).split("\n").length);
+
+        out.reset();
+        assertEquals(0, run(out, "decompress", dir.toString()));
+        assertEquals(filenames.length, out.toString(StandardCharsets.UTF_8.name()).split("\n").length);
+
+        out.reset();
+        assertEquals(0, run(out, "compress", "--error-pct", "1", "--block-size", "10000", dir.toString()));
+        assertEquals(filenames.length, out.toString(StandardCharsets.UTF_8.name()).split("\n").length);
+        assertFalse(Files.exists(dir.resolve(filenames[0] + Cli.EXTENSION + Cli.EXTENSION)));
+
+        out.reset();
+        assertEquals(0, run(out, "stats", "--error", "0.5", "--codec", "sim-piece", dir.resolve(filenames[0]).toString()));
+        assertTrue(out.toString(StandardCharsets.UTF_8.name()).contains("ratio: "));
+
+        for (String filename : filenames) {
+            Path compressed = dir.resolve(filename + Cli.EXTENSION);
+            assertEquals(0, run(new ByteArrayOutputStream(), "decompress", compressed.toString()));
+
+            List<String> original;
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(dir.resolve(filename)))) {
+                original = Arrays.asList(new String(readAll(inputStream), StandardCharsets.UTF_8).split("\n"));
+            }
+            List<String> decompressed = Files.readAllLines(dir.resolve(filename + Cli.EXTENSION + ".csv"));
+            assertEquals(original.size(), decompressed.size());
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (String line : original) {
+                double value = Double.parseDouble(line.split(",")[1]);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            for (int i = 0; i < original.size(); i++) {
+                String[] expected = original.get(i).split(",");
+                String[] actual = decompressed.get(i).split(",");
+                assertEquals(Long.parseLong(expected[0]), Long.parseLong(actual[0]));
+                assertEquals(Double.parseDouble(expected[1]), Double.parseDouble(actual[1]), 1.1 * (max - min) * 0.01);
+            }
+        }
+    }
+
+    @Test
+    public void TestInvalidArguments() {
+        assertEquals(2, run(new ByteArrayOutputStream()));
+        assertEquals(2, run(new ByteArrayOutputStream(), "shrink", "file.csv"));
+        assertEquals(2, run(new ByteArrayOutputStream(), "compress", "file.csv"));
+        assertEquals(2, run(new ByteArrayOutputStream(), "compress", "--error", "1", "--error-pct", "1", "file.csv"));
+        assertEquals(2, run(new ByteArrayOutputStream(), "compress", "--error", "-1", "file.csv"));
+        assertEquals(1, run(new ByteArrayOutputStream(), "stats", "--error", "1", "missing.csv"));
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) outStream.write(buffer, 0, read);
+
+        return outStream.toByteArray();
+    }
+}
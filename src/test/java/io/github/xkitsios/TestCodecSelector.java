@@ -0,0 +1,95 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCodecSelector {
+    private static TimeSeriesColumns noise(int numPoints, long seed) {
+        Random random = new Random(seed);
+        long[] timestamps = new long[numPoints];
+        double[] values = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            timestamps[i] = i;
+            values[i] = random.nextGaussian();
+        }
+
+        return new TimeSeriesColumns(timestamps, values, -10, 10);
+    }
+
+    @Test
+    public void TestQuantizedDelta() throws Exception {
+        TimeSeriesColumns columns = noise(10000, 1);
+        double epsilon = 0.01;
+        byte[] binary = QuantizedDelta.compress(columns.getTimestamps(), columns.getValues(), epsilon);
+        List<Point> points = QuantizedDelta.decompress(binary);
+
+        assertEquals(columns.size(), points.size());
+        for (int i = 0; i < columns.size(); i++) {
+            assertEquals(columns.getTimestamps()[i], points.get(i).getTimestamp());
+            assertEquals(columns.getValues()[i], points.get(i).getValue(), epsilon * (1 + 1e-9));
+        }
+    }
+
+    @Test
+    public void TestSelection() throws Exception {
+        CodecSelector selector = new CodecSelector();
+        TimeSeriesColumns noise = noise(1 << 16, 2);
+        assertEquals(Codec.QUANTIZED_DELTA, selector.select(noise.getTimestamps(), noise.getValues(), 0, noise.size(), 0.001));
+
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/STOXX50E.csv.gz"), ",", true);
+        TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(ts.data);
+        Codec codec = selector.select(columns.getTimestamps(), columns.getValues(), 0, 1 << 16, ts.range * 0.01);
+        assertNotEquals(Codec.QUANTIZED_DELTA, codec);
+
+        assertEquals(Codec.QUANTIZED_DELTA, new CodecSelector(1 << 12, 0.99).select(columns.getTimestamps(), columns.getValues(), 0, 1 << 16, ts.range * 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new CodecSelector(2, 0.05));
+        assertThrows(IllegalArgumentException.class, () -> new CodecSelector(1 << 12, 1));
+    }
+
+    @Test
+    public void TestAdaptiveBlocks() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/BTCUSD.csv.gz"), ",", true);
+        TimeSeriesColumns smooth = TimeSeriesColumns.fromPoints(ts.data);
+        TimeSeriesColumns noise = noise(smooth.size(), 3);
+        int half = smooth.size() / 2;
+        long[] timestamps = new long[smooth.size()];
+        double[] values = new double[smooth.size()];
+        for (int i = 0; i < smooth.size(); i++) {
+            timestamps[i] = i;
+            values[i] = i < half ? smooth.getValues()[i] : smooth.getValues()[half] + noise.getValues()[i] * ts.range * 0.05;
+        }
+        double epsilon = ts.range * 0.001;
+
+        for (int blockSize : new int[]{1000, 20000}) {
+            ErrorStats stats = new ErrorStats(epsilon * (1 + 1e-6));
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            CodecSelector selector = new CodecSelector(4000, 0.05);
+            try (BlockWriter writer = new BlockWriter(outStream, selector, epsilon, stats)) {
+                for (int from = 0; from < timestamps.length; from += blockSize)
+                    writer.write(timestamps, values, from, Math.min(timestamps.length, from + blockSize));
+            }
+            assertEquals(timestamps.length, stats.getNumPoints());
+
+            List<Point> decompressed = new ArrayList<>();
+            BlockReader.decompress(new ByteArrayInputStream(outStream.toByteArray()), decompressed::addAll);
+            assertEquals(timestamps.length, decompressed.size());
+            for (int i = 0; i < timestamps.length; i++)
+                assertEquals(values[i], decompressed.get(i).getValue(), epsilon * (1 + 1e-6));
+
+            for (Codec codec : new Codec[]{Codec.SIM_PIECE, Codec.MIX_PIECE}) {
+                ByteArrayOutputStream fixed = new ByteArrayOutputStream();
+                BlockWriter.compress(timestamps, values, epsilon, codec, blockSize, fixed);
+                assertTrue(outStream.size() < fixed.size(), blockSize + " " + codec + ": " + outStream.size() + " >= " + fixed.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestColumnReader {
+    private TimeSeriesColumns read(String text) throws IOException {
+        return ColumnReader.readCsv(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)), ',');
+    }
+
+    @Test
+    public void TestReadCsv(@TempDir Path dir) throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/ETHUSD.csv.gz", "/BTCUSD.csv.gz"};
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            Path file = dir.resolve(filename.substring(1));
+            Files.copy(getClass().getResourceAsStream(filename), file);
+
+            TimeSeriesColumns columns = ColumnReader.readCsv(file, ',');
+            assertEquals(ts.data.size(), columns.size());
+            assertEquals(ts.range, columns.getRange());
+            for (int i = 0; i < columns.size(); i++) {
+                assertEquals(ts.data.get(i).getTimestamp(), columns.getTimestamps()[i]);
+                assertEquals(ts.data.get(i).getValue(), columns.getValues()[i]);
+            }
+
+            assertArrayEquals(MixPiece.compress(ts.data, ts.range * 0.01), MixPiece.compress(columns.getTimestamps(), columns.getValues(), ts.range * 0.01));
+            assertArrayEquals(SimPiece.compress(ts.data, ts.range * 0.01), SimPiece.compress(columns.getTimestamps(), columns.getValues(), ts.range * 0.01));
+        }
+    }
+
+    @Test
+    public void TestParseValues() throws Exception {
+        Random random = new Random(0);
+        StringBuilder text = new StringBuilder();
+        double[] expected = new double[20000];
+        for (int i = 0; i < expected.length; i++) {
+            double value;
+            switch (i % 4) {
+                case 0:
+                    value = random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+                    break;
+                case 1:
+                    value = Math.round(random.nextDouble() * 1e6) / 1e3;
+                    break;
+                case 2:
+                    value = Double.longBitsToDouble(random.nextLong());
+                    break;
+                default:
+                    value = random.nextInt(2000) - 1000;
+            }
+            if (Double.isNaN(value)) value = 0;
+            expected[i] = value;
+            text.append(i).append(',').append(value).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+
+        TimeSeriesColumns columns = read(text.toString());
+        assertEquals(expected.length, columns.size());
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], columns.getValues()[i], "Line " + (i + 1));
+
+        String[] literals = {"1.5e3", "-0", "+2.25", ".5", "7.", "1E-5", "123456789012345678901234567890", "0.1", "4.35", "1e23", "NaN", "-Infinity"};
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < literals.length; i++) lines.append(i).append(", ").append(literals[i]).append(" ,extra\n");
+        lines.append("\n").append(literals.length).append(",9");
+        columns = read(lines.toString());
+        assertEquals(literals.length + 1, columns.size());
+        for (int i = 0; i < literals.length; i++)
+            assertEquals(Double.parseDouble(literals[i]), columns.getValues()[i], literals[i]);
+        assertEquals(9, columns.getValues()[literals.length]);
+
+        assertThrows(IOException.class, () -> read("0,1\n1,x\n"));
+        assertThrows(IOException.class, () -> read("0;1\n"));
+        assertThrows(IOException.class, () -> read("\n"));
+    }
+
+    @Test
+    public void TestReadBinary(@TempDir Path dir) throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/ETHUSD.csv.gz"), ",", true);
+        ByteBuffer timestamps = ByteBuffer.allocate(ts.data.size() * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer values = ByteBuffer.allocate(ts.data.size() * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (Point point : ts.data) {
+            timestamps.putLong(point.getTimestamp());
+            values.putDouble(point.getValue());
+        }
+        Files.write(dir.resolve("timestamps.bin"), timestamps.array());
+        Files.write(dir.resolve("values.bin"), values.array());
+
+        TimeSeriesColumns columns = ColumnReader.readBinary(dir.resolve("timestamps.bin"), dir.resolve("values.bin"));
+        assertEquals(ts.range, columns.getRange());
+        List<Point> points = columns.toPoints();
+        assertEquals(ts.data.size(), points.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(ts.data.get(i).getTimestamp(), points.get(i).getTimestamp());
+            assertEquals(ts.data.get(i).getValue(), points.get(i).getValue());
+        }
+
+        Files.write(dir.resolve("short.bin"), new byte[8]);
+        assertThrows(IOException.class, () -> ColumnReader.readBinary(dir.resolve("timestamps.bin"), dir.resolve("short.bin")));
+    }
+}
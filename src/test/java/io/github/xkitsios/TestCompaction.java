@@ -0,0 +1,110 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCompaction {
+    private static final int PART_SIZE = 3600;
+
+    private void assertSamePoints(List<Point> expected, List<Point> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), "Value did not match for timestamp " + expected.get(i).getTimestamp());
+        }
+    }
+
+    // Bit-packed parts keep their exact slopes and starting values, so compaction stays within epsilon of the data
+    private void assertWithin(List<Point> expected, List<Point> actual, double epsilon) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), epsilon * (1 + 1e-9), "Value did not match for timestamp " + expected.get(i).getTimestamp());
+    }
+
+    private int totalLength(List<byte[]> binaries) {
+        int length = 0;
+        for (byte[] binary : binaries) length += binary.length;
+        return length;
+    }
+
+    @Test
+    public void TestCompact() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/ETHUSD.csv.gz"};
+        for (Encoding encoding : Encoding.values()) {
+            List<List<byte[]>> simPieceSeries = new ArrayList<>();
+            List<List<byte[]>> mixPieceSeries = new ArrayList<>();
+            List<List<Point>> simPieceExpected = new ArrayList<>();
+            List<List<Point>> mixPieceExpected = new ArrayList<>();
+            for (String filename : filenames) {
+                TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+                double epsilon = ts.range * 0.01;
+                List<byte[]> simPieceParts = new ArrayList<>();
+                List<byte[]> mixPieceParts = new ArrayList<>();
+                List<Point> simPieceDecompressed = new ArrayList<>();
+                List<Point> mixPieceDecompressed = new ArrayList<>();
+                for (int from = 0; from < ts.data.size(); from += PART_SIZE) {
+                    List<Point> part = ts.data.subList(from, Math.min(from + PART_SIZE, ts.data.size()));
+                    simPieceParts.add(SimPiece.compress(part, epsilon, encoding));
+                    simPieceDecompressed.addAll(SimPiece.decompress(simPieceParts.get(simPieceParts.size() - 1)));
+                    mixPieceParts.add(MixPiece.compress(part, epsilon, encoding));
+                    mixPieceDecompressed.addAll(MixPiece.decompress(mixPieceParts.get(mixPieceParts.size() - 1)));
+                }
+                Collections.reverse(simPieceParts);
+                Collections.reverse(mixPieceParts);
+
+                byte[] simPiece = SimPiece.compact(simPieceParts);
+                assertSamePoints(simPieceDecompressed, SimPiece.decompress(simPiece));
+                assertTrue(simPiece.length < totalLength(simPieceParts));
+
+                byte[] mixPiece = MixPiece.compact(mixPieceParts);
+                assertSamePoints(mixPieceDecompressed, MixPiece.decompress(mixPiece));
+                assertTrue(mixPiece.length < totalLength(mixPieceParts));
+
+                if (encoding == Encoding.BIT_PACKED) {
+                    assertWithin(ts.data, SimPiece.decompress(simPiece), epsilon);
+                    assertWithin(ts.data, MixPiece.decompress(mixPiece), epsilon);
+                }
+
+                simPieceSeries.add(simPieceParts);
+                mixPieceSeries.add(mixPieceParts);
+                simPieceExpected.add(simPieceDecompressed);
+                mixPieceExpected.add(mixPieceDecompressed);
+            }
+
+            List<byte[]> simPieceCompacted = SimPiece.compactAll(simPieceSeries);
+            List<byte[]> mixPieceCompacted = MixPiece.compactAll(mixPieceSeries);
+            for (int s = 0; s < filenames.length; s++) {
+                assertSamePoints(simPieceExpected.get(s), SimPiece.decompress(simPieceCompacted.get(s)));
+                assertSamePoints(mixPieceExpected.get(s), MixPiece.decompress(mixPieceCompacted.get(s)));
+            }
+        }
+    }
+
+    @Test
+    public void TestRejectNonAdjacent() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/FaceFour.csv.gz"), ",", true);
+        double epsilon = ts.range * 0.01;
+        byte[] first = MixPiece.compress(ts.data.subList(0, 2000), epsilon);
+        byte[] overlapping = MixPiece.compress(ts.data.subList(1000, 3000), epsilon);
+        byte[] gap = MixPiece.compress(ts.data.subList(2500, 3000), epsilon);
+        byte[] coarser = MixPiece.compress(ts.data.subList(2000, 3000), 2 * epsilon);
+        byte[] packed = MixPiece.compress(ts.data.subList(2000, 3000), epsilon, Encoding.BIT_PACKED);
+        byte[] simPieceFirst = SimPiece.compress(ts.data.subList(0, 2000), epsilon, Encoding.BIT_PACKED);
+        byte[] simPieceNext = SimPiece.compress(ts.data.subList(2000, 3000), epsilon);
+
+        assertThrows(IllegalArgumentException.class, () -> MixPiece.compact(Arrays.asList(first, overlapping)));
+        assertThrows(IllegalArgumentException.class, () -> MixPiece.compact(Arrays.asList(first, gap)));
+        assertThrows(IllegalArgumentException.class, () -> MixPiece.compact(Arrays.asList(first, coarser)));
+        assertThrows(IllegalArgumentException.class, () -> MixPiece.compact(Arrays.asList(first, packed)));
+        assertThrows(IllegalArgumentException.class, () -> SimPiece.compact(Arrays.asList(simPieceFirst, simPieceNext)));
+        assertThrows(IllegalArgumentException.class, () -> SimPiece.compact(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TestDecompressInto {
+    private void check(List<Point> points, int size, long[] timestamps, double[] values, int written) {
+        assertEquals(points.size(), size);
+        assertEquals(size, written);
+        for (int i = 0; i < written; i++) {
+            assertEquals(points.get(i).getTimestamp(), timestamps[i]);
+            assertEquals(points.get(i).getValue(), values[i]);
+        }
+    }
+
+    private void check(List<Point> points, int size, LongBuffer timestamps, DoubleBuffer values, int written) {
+        assertEquals(size, written);
+        assertEquals(size + 1, timestamps.position());
+        assertEquals(size + 1, values.position());
+        for (int i = 0; i < written; i++) {
+            assertEquals(points.get(i).getTimestamp(), timestamps.get(i + 1));
+            assertEquals(points.get(i).getValue(), values.get(i + 1));
+        }
+    }
+
+    private LongBuffer timestampBuffer(int size) {
+        LongBuffer buffer = ByteBuffer.allocateDirect((size + 1) * Long.BYTES).asLongBuffer();
+        buffer.put(-1);
+        return buffer;
+    }
+
+    private DoubleBuffer valueBuffer(int size) {
+        DoubleBuffer buffer = DoubleBuffer.allocate(size + 1);
+        buffer.put(-1);
+        return buffer;
+    }
+
+    @Test
+    public void TestDecompressIntoArraysAndBuffers() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/BTCUSD.csv.gz"};
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            double epsilon = ts.range * 0.01;
+
+            byte[] simPiece = SimPiece.compress(ts.data, epsilon);
+            int size = SimPiece.decompressedSize(simPiece);
+            long[] timestamps = new long[size + 10];
+            double[] values = new double[size + 10];
+            check(SimPiece.decompress(simPiece), size, timestamps, values, SimPiece.decompressInto(simPiece, timestamps, values));
+            LongBuffer timestampBuffer = timestampBuffer(size);
+            DoubleBuffer valueBuffer = valueBuffer(size);
+            check(SimPiece.decompress(simPiece), size, timestampBuffer, valueBuffer, SimPiece.decompressInto(simPiece, timestampBuffer, valueBuffer));
+            assertThrows(IllegalArgumentException.class, () -> SimPiece.decompressInto(simPiece, new long[size - 1], new double[size - 1]));
+
+            byte[] mixPiece = MixPiece.compress(ts.data, epsilon);
+            int mixPieceSize = MixPiece.decompressedSize(mixPiece);
+            check(MixPiece.decompress(mixPiece), mixPieceSize, timestamps, values, MixPiece.decompressInto(mixPiece, timestamps, values));
+            timestampBuffer = timestampBuffer(mixPieceSize);
+            valueBuffer = valueBuffer(mixPieceSize);
+            check(MixPiece.decompress(mixPiece), mixPieceSize, timestampBuffer, valueBuffer, MixPiece.decompressInto(mixPiece, timestampBuffer, valueBuffer));
+            assertThrows(IllegalArgumentException.class, () -> MixPiece.decompressInto(mixPiece, new long[mixPieceSize - 1], new double[mixPieceSize - 1]));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.xkitsios;
+
+import com.github.luben.zstd.Zstd;
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestEncoding {
+    private void check(List<Point> ts, List<Point> decompressed, double epsilon) {
+        assertEquals(ts.size(), decompressed.size());
+        for (int i = 0; i < ts.size(); i++) {
+            assertEquals(ts.get(i).getTimestamp(), decompressed.get(i).getTimestamp());
+            assertEquals(ts.get(i).getValue(), decompressed.get(i).getValue(), epsilon * (1 + 1e-9), "Value did not match for timestamp " + ts.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void TestPackedLongs() throws Exception {
+        Random random = new Random(7);
+        PackedLongs column = new PackedLongs();
+        long[] expected = new long[1000];
+        for (int i = 0; i < expected.length; i++) {
+            int bits = i / 128 * 9;
+            expected[i] = i % 3 == 0 ? random.nextLong() >> (64 - Math.max(bits, 1)) : random.nextLong() >>> (64 - Math.max(bits, 1));
+            if (i % 3 == 0) column.addSigned(expected[i]);
+            else column.add(expected[i]);
+        }
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        column.write(outStream);
+
+        PackedLongs read = PackedLongs.read(new ByteArrayInputStream(outStream.toByteArray()));
+        assertEquals(expected.length, read.size());
+        for (int i = 0; i < expected.length; i++) assertEquals(expected[i], i % 3 == 0 ? read.nextSigned() : read.next());
+    }
+
+    @Test
+    public void TestQuantizedSlopes() throws Exception {
+        Random random = new Random(11);
+        for (int i = 0; i < 10000; i++) {
+            double aMin = random.nextGaussian() * Math.pow(10, random.nextInt(8) - 4);
+            double aMax = aMin + Math.abs(random.nextGaussian()) * Math.pow(10, -random.nextInt(12));
+            double a = SlopeEncoder.quantize(aMin, aMax);
+            assertTrue(a >= aMin && a <= aMax);
+
+            PackedLongs exponents = new PackedLongs();
+            PackedLongs mantissas = new PackedLongs();
+            SlopeEncoder.write(a, exponents, mantissas);
+            assertEquals(a, SlopeEncoder.read(exponents, mantissas));
+        }
+        assertEquals(0, SlopeEncoder.quantize(-1, 2));
+        assertEquals(1.5, SlopeEncoder.quantize(1.4, 1.6));
+    }
+
+    @Test
+    public void TestBitPacked() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/Lightning.csv.gz", "/ETHUSD.csv.gz", "/BTCUSD.csv.gz"};
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            for (double epsilonPct : new double[]{0.0005, 0.005, 0.05}) {
+                double epsilon = ts.range * epsilonPct;
+
+                byte[] simPiece = SimPiece.compress(ts.data, epsilon, Encoding.BIT_PACKED);
+                check(ts.data, SimPiece.decompress(simPiece), epsilon);
+                assertArrayEquals(SimPiece.compress(ts.data, epsilon), SimPiece.compress(ts.data, epsilon, Encoding.VARIABLE_BYTE));
+
+                byte[] mixPiece = MixPiece.compress(ts.data, epsilon, Encoding.BIT_PACKED);
+                check(ts.data, MixPiece.decompress(mixPiece), epsilon);
+                assertEquals(ts.data.size(), MixPiece.decompressedSize(mixPiece));
+                assertArrayEquals(MixPiece.compress(ts.data, epsilon), MixPiece.compress(ts.data, epsilon, Encoding.VARIABLE_BYTE));
+            }
+        }
+    }
+
+    @Test
+    public void TestLargeTimestamps() throws Exception {
+        long start = 1_700_000_000_000L;
+        long[] timestamps = new long[5000];
+        double[] values = new double[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = start + i;
+            values[i] = Math.sin(i / 50.0) * 100;
+        }
+
+        long[] decompressedTimestamps = new long[timestamps.length];
+        double[] decompressedValues = new double[timestamps.length];
+        byte[] simPiece = SimPiece.compress(timestamps, values, 0.5, Encoding.BIT_PACKED);
+        assertEquals(timestamps.length, SimPiece.decompressInto(simPiece, decompressedTimestamps, decompressedValues));
+        assertArrayEquals(timestamps, decompressedTimestamps);
+        assertArrayEquals(values, decompressedValues, 0.5 * (1 + 1e-9));
+
+        byte[] mixPiece = MixPiece.compress(timestamps, values, 0.5, Encoding.BIT_PACKED);
+        assertEquals(timestamps.length, MixPiece.decompressInto(mixPiece, decompressedTimestamps, decompressedValues));
+        assertArrayEquals(timestamps, decompressedTimestamps);
+        assertArrayEquals(values, decompressedValues, 0.5 * (1 + 1e-9));
+    }
+
+    @Test
+    public void TestCorruptInput() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/FaceFour.csv.gz"), ",", true);
+        double epsilon = ts.range * 0.005;
+        for (Encoding encoding : Encoding.values()) {
+            byte[] body = Zstd.decompress(MixPiece.compress(ts.data, epsilon, encoding), ts.data.size() * 16);
+            for (int length : new int[]{0, 3, body.length / 2}) {
+                byte[] truncated = Zstd.compress(Arrays.copyOf(body, length));
+                assertThrows(IOException.class, () -> MixPiece.decompress(truncated));
+                assertThrows(IOException.class, () -> MixPiece.findIntervals(truncated, ValuePredicate.atLeast(0)));
+                assertThrows(IOException.class, () -> MixPiece.compact(Collections.singletonList(truncated)));
+            }
+        }
+    }
+}
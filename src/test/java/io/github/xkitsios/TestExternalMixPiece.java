@@ -0,0 +1,90 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestExternalMixPiece {
+    @TempDir
+    Path tempDirectory;
+
+    private byte[] compress(TimeSeriesColumns columns, double error, int runCapacity, int fanIn) throws Exception {
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        try (ExternalMixPiece writer = new ExternalMixPiece(outStream, error, tempDirectory, runCapacity, fanIn)) {
+            writer.write(columns.getTimestamps(), columns.getValues(), 0, columns.size());
+        }
+
+        return outStream.toByteArray();
+    }
+
+    private void assertNoTempFiles() throws Exception {
+        try (Stream<Path> paths = Files.list(tempDirectory)) {
+            assertEquals(0, paths.count());
+        }
+    }
+
+    @Test
+    public void TestSameAsInMemory() throws Exception {
+        for (String filename : new String[]{"/BTCUSD.csv.gz", "/ETHUSD.csv.gz", "/FaceFour.csv.gz", "/Lightning.csv.gz", "/MoteStrain.csv.gz"}) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(ts.data);
+            for (double epsilonPct : new double[]{0.0005, 0.005, 0.05}) {
+                double epsilon = ts.range * epsilonPct;
+                byte[] expected = MixPiece.compress(columns.getTimestamps(), columns.getValues(), epsilon);
+
+                assertArrayEquals(expected, compress(columns, epsilon, 64, 4), filename + " " + epsilonPct);
+                assertArrayEquals(expected, compress(columns, epsilon, 100, 7), filename + " " + epsilonPct);
+                assertArrayEquals(expected, compress(columns, epsilon, 1 << 20, 2), filename + " " + epsilonPct);
+                assertNoTempFiles();
+            }
+        }
+    }
+
+    @Test
+    public void TestMemoryBudget() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/STOXX50E.csv.gz"), ",", true);
+        double epsilon = ts.range * 0.0005;
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        try (ExternalMixPiece writer = new ExternalMixPiece(outStream, epsilon, ExternalMixPiece.MIN_MEMORY_BUDGET, tempDirectory)) {
+            for (Point point : ts.data) writer.write(point.getTimestamp(), point.getValue());
+        }
+
+        assertArrayEquals(MixPiece.compress(ts.data, epsilon), outStream.toByteArray());
+        assertNoTempFiles();
+        assertThrows(IllegalArgumentException.class, () -> new ExternalMixPiece(new ByteArrayOutputStream(), epsilon, 1 << 10, tempDirectory));
+    }
+
+    @Test
+    public void TestHighlyCompressible() throws Exception {
+        int numPoints = 1 << 21;
+        long[] timestamps = new long[numPoints];
+        double[] values = new double[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            timestamps[i] = i;
+            values[i] = i % 100;
+        }
+        TimeSeriesColumns columns = new TimeSeriesColumns(timestamps, values, 0, 99);
+
+        byte[] binary = compress(columns, 0.5, 1 << 10, 4);
+        assertArrayEquals(MixPiece.compress(timestamps, values, 0.5), binary);
+        List<Point> points = MixPiece.decompress(binary);
+        assertEquals(numPoints, points.size());
+        for (int i = 0; i < numPoints; i++) assertEquals(values[i], points.get(i).getValue(), 0.5 * (1 + 1e-9));
+    }
+
+    @Test
+    public void TestEmpty() throws Exception {
+        ExternalMixPiece writer = new ExternalMixPiece(new ByteArrayOutputStream(), 0.5, ExternalMixPiece.MIN_MEMORY_BUDGET, tempDirectory);
+        assertThrows(IllegalStateException.class, writer::close);
+        assertNoTempFiles();
+    }
+}
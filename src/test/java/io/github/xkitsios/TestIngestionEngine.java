@@ -0,0 +1,185 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestIngestionEngine {
+    private static class Collector implements IngestionEngine.Subscriber {
+        private final long initialRequest;
+        private final List<SealedBlob> blobs = Collections.synchronizedList(new ArrayList<>());
+        private IngestionEngine.Subscription subscription;
+        private volatile boolean complete;
+
+        private Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(IngestionEngine.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(SealedBlob blob) {
+            assertFalse(complete);
+            blobs.add(blob);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+
+    @Test
+    public void TestInterleavedSeries() throws Exception {
+        List<Point> points = new ArrayList<>();
+        for (String filename : new String[]{"/MoteStrain.csv.gz", "/FaceFour.csv.gz"}) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            points.addAll(ts.data);
+        }
+        double epsilon = 0.05;
+        long[] seriesIds = {0, -1, 42, Long.MIN_VALUE, Long.MAX_VALUE, 7L << 40, 123456789, 17, 18, 19, 20, 21, 1 << 20, 3, -77, 99};
+        Map<Long, List<Point>> expected = new HashMap<>();
+        for (long seriesId : seriesIds) expected.put(seriesId, new ArrayList<>());
+
+        Collector collector = new Collector(Long.MAX_VALUE);
+        IngestionEngine engine = new IngestionEngine(epsilon, 1000, Long.MAX_VALUE, 4);
+        engine.subscribe(collector);
+        Random random = new Random(3);
+        long[] nextTimestamps = new long[seriesIds.length];
+        for (int i = 0; i < 40000; i++) {
+            int s = random.nextInt(seriesIds.length);
+            double value = points.get((s * 1000 + i) % points.size()).getValue();
+            engine.onNext(seriesIds[s], nextTimestamps[s], value);
+            expected.get(seriesIds[s]).add(new Point(nextTimestamps[s]++, value));
+        }
+        assertTrue(engine.getNumOpenSeries() <= seriesIds.length);
+        engine.close();
+        assertTrue(collector.complete);
+        assertEquals(0, engine.getNumOpenSeries());
+
+        Map<Long, Integer> offsets = new HashMap<>();
+        for (SealedBlob blob : collector.blobs) {
+            List<Point> series = expected.get(blob.getSeriesId());
+            int from = offsets.getOrDefault(blob.getSeriesId(), 0);
+            List<Point> part = series.subList(from, from + blob.getNumPoints());
+            assertEquals(part.get(0).getTimestamp(), blob.getFirstTimestamp());
+            assertEquals(part.get(part.size() - 1).getTimestamp(), blob.getLastTimestamp());
+            assertArrayEquals(SimPiece.compress(part, epsilon), blob.getBinary());
+            offsets.put(blob.getSeriesId(), from + blob.getNumPoints());
+            assertTrue(blob.getNumPoints() <= 1000);
+        }
+        for (long seriesId : seriesIds) assertEquals(expected.get(seriesId).size(), offsets.get(seriesId));
+    }
+
+    @Test
+    public void TestBackpressure() throws Exception {
+        Collector collector = new Collector(1);
+        IngestionEngine engine = new IngestionEngine(0.1, 10, Long.MAX_VALUE, 2);
+        engine.subscribe(collector);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) engine.onNext(i % 5, i / 5, Math.sin(i));
+                engine.onComplete();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING) {
+            assertTrue(producer.isAlive());
+            Thread.sleep(1);
+        }
+        assertEquals(1, collector.blobs.size());
+        assertEquals(2, engine.getNumPendingBlobs());
+
+        collector.subscription.request(Long.MAX_VALUE);
+        producer.join();
+        assertNull(failure.get());
+        assertTrue(collector.complete);
+        assertEquals(10, collector.blobs.size());
+    }
+
+    @Test
+    public void TestRequestFromOtherThread() throws Exception {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Collector collector = new Collector(1) {
+            @Override
+            public void onNext(SealedBlob blob) {
+                super.onNext(blob);
+                Thread requester = new Thread(() -> super.subscription.request(1));
+                requester.start();
+                try {
+                    requester.join(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (requester.isAlive()) failure.compareAndSet(null, new AssertionError("Request blocked by delivery"));
+            }
+        };
+        IngestionEngine engine = new IngestionEngine(0.1, 10, Long.MAX_VALUE, 2);
+        engine.subscribe(collector);
+        for (int i = 0; i < 100; i++) engine.onNext(i % 5, i / 5, Math.sin(i));
+        engine.onComplete();
+
+        assertNull(failure.get());
+        assertTrue(collector.complete);
+        assertEquals(10, collector.blobs.size());
+    }
+
+    @Test
+    public void TestFlushByAge() throws Exception {
+        Collector collector = new Collector(Long.MAX_VALUE);
+        IngestionEngine engine = new IngestionEngine(0.1, Integer.MAX_VALUE, 1, 16);
+        engine.subscribe(collector);
+        for (int i = 0; i < 30; i++) engine.onNext(i % 3, i / 3, i);
+        Thread.sleep(5);
+        engine.flushExpired();
+        assertEquals(0, engine.getNumOpenSeries());
+        assertEquals(3, collector.blobs.size());
+        assertFalse(collector.complete);
+
+        engine.onNext(0, 10, 1);
+        assertEquals(1, engine.getNumOpenSeries());
+        assertThrows(IllegalArgumentException.class, () -> engine.onNext(0, 10, 1));
+        engine.close();
+        assertEquals(4, collector.blobs.size());
+        List<Point> decompressed = SimPiece.decompress(collector.blobs.get(3).getBinary());
+        assertEquals(1, decompressed.size());
+        assertEquals(10, decompressed.get(0).getTimestamp());
+        assertEquals(1, decompressed.get(0).getValue(), 0.1);
+    }
+
+    @Test
+    public void TestShrink() throws Exception {
+        Collector collector = new Collector(Long.MAX_VALUE);
+        IngestionEngine engine = new IngestionEngine(0.1, 2, Long.MAX_VALUE, Integer.MAX_VALUE);
+        engine.subscribe(collector);
+        for (int series = 0; series < 10000; series++) engine.onNext(series, 0, series);
+        assertEquals(10000, engine.getNumOpenSeries());
+        assertTrue(engine.getCapacity() >= 20000);
+
+        for (int series = 0; series < 9990; series++) engine.onNext(series, 1, series);
+        assertEquals(10, engine.getNumOpenSeries());
+        assertTrue(engine.getCapacity() <= 128, "Capacity " + engine.getCapacity());
+        for (int series = 9990; series < 10000; series++) engine.onNext(series, 1, series);
+        engine.close();
+        assertEquals(10000, collector.blobs.size());
+        assertTrue(collector.complete);
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestIntervals {
+    private void check(List<Point> ts, List<Point> decompressed, List<Interval> intervals, ValuePredicate predicate, double epsilon) {
+        Map<Long, Boolean> matches = new HashMap<>();
+        long previousEnd = Long.MIN_VALUE;
+        for (Interval interval : intervals) {
+            assertTrue(interval.getStart() <= interval.getEnd());
+            assertTrue(interval.getStart() > previousEnd, "Intervals must be disjoint and sorted");
+            previousEnd = interval.getEnd();
+            for (long t = interval.getStart(); t <= interval.getEnd(); t++) matches.put(t, interval.isDefinite());
+        }
+
+        // Bands are widened by a tiny slack for the rounding of stored slopes and starting values
+        for (Point point : decompressed) {
+            double value = point.getValue();
+            Boolean definite = matches.get(point.getTimestamp());
+            if (value >= predicate.getLower() - epsilon && value <= predicate.getUpper() + epsilon)
+                assertNotNull(definite, "Missed possible match at " + point.getTimestamp());
+            if (definite != null && definite)
+                assertTrue(value >= predicate.getLower() + epsilon && value <= predicate.getUpper() - epsilon, "Wrong definite match at " + point.getTimestamp());
+            if (definite != null && !definite)
+                assertTrue(value >= predicate.getLower() - 1.001 * epsilon && value <= predicate.getUpper() + 1.001 * epsilon, "Wrong possible match at " + point.getTimestamp());
+        }
+
+        for (Point point : ts) {
+            Boolean definite = matches.get(point.getTimestamp());
+            boolean match = point.getValue() >= predicate.getLower() && point.getValue() <= predicate.getUpper();
+            if (definite == null) assertFalse(match, "Missed match at " + point.getTimestamp());
+            else if (definite) assertTrue(match, "Wrong definite match at " + point.getTimestamp());
+        }
+    }
+
+    @Test
+    public void TestFindIntervals() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/ETHUSD.csv.gz"};
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            double min = Double.MAX_VALUE;
+            for (Point point : ts.data) min = Math.min(min, point.getValue());
+            double epsilon = ts.range * 0.01;
+            ValuePredicate[] predicates = {
+                    ValuePredicate.atLeast(min + ts.range * 0.7),
+                    ValuePredicate.atMost(min + ts.range * 0.2),
+                    ValuePredicate.between(min + ts.range * 0.4, min + ts.range * 0.6),
+                    ValuePredicate.between(min + ts.range * 0.5, min + ts.range * 0.5),
+            };
+
+            for (Encoding encoding : Encoding.values()) {
+                double storedEpsilon = encoding == Encoding.BIT_PACKED ? epsilon : (float) epsilon;
+
+                byte[] simPiece = SimPiece.compress(ts.data, epsilon, encoding);
+                List<Point> simPieceDecompressed = SimPiece.decompress(simPiece);
+                for (ValuePredicate predicate : predicates)
+                    check(ts.data, simPieceDecompressed, SimPiece.findIntervals(simPiece, predicate), predicate, storedEpsilon);
+
+                byte[] mixPiece = MixPiece.compress(ts.data, epsilon, encoding);
+                List<Point> mixPieceDecompressed = MixPiece.decompress(mixPiece);
+                for (ValuePredicate predicate : predicates)
+                    check(ts.data, mixPieceDecompressed, MixPiece.findIntervals(mixPiece, predicate), predicate, storedEpsilon);
+            }
+        }
+    }
+
+    @Test
+    public void TestFloatSlack() throws Exception {
+        for (String filename : new String[]{"/ETHUSD.csv.gz", "/BTCUSD.csv.gz"}) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            double epsilon = ts.range * 0.001;
+            ErrorStats stats = new ErrorStats();
+            byte[] binary = MixPiece.compress(ts.data, epsilon, stats);
+            assertTrue(stats.getMaxError() > (float) epsilon);
+
+            // Predicate between the original value with the largest error and its reconstruction minus epsilon
+            List<Point> decompressed = MixPiece.decompress(binary);
+            Point original = null;
+            for (Point point : ts.data) if (point.getTimestamp() == stats.getMaxErrorTimestamp()) original = point;
+            Point reconstructed = decompressed.get((int) (original.getTimestamp() - decompressed.get(0).getTimestamp()));
+            double excess = (stats.getMaxError() - (float) epsilon) / 2;
+            ValuePredicate predicate = reconstructed.getValue() > original.getValue()
+                    ? ValuePredicate.atLeast(original.getValue() + excess)
+                    : ValuePredicate.atMost(original.getValue() - excess);
+            check(ts.data, decompressed, MixPiece.findIntervals(binary, predicate), predicate, (float) epsilon);
+        }
+    }
+}
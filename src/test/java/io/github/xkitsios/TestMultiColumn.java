@@ -0,0 +1,57 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMultiColumn {
+    @Test
+    public void TestCompressColumns() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/Lightning.csv.gz", "/ETHUSD.csv.gz"};
+        int numRows = 39200;
+        long[] timestamps = new long[numRows];
+        for (int i = 0; i < numRows; i++) timestamps[i] = 1_600_000_000L + 15L * i;
+        double[][] columns = new double[filenames.length][numRows];
+        double[] errors = new double[filenames.length];
+        long separateBytes = 0;
+        for (int c = 0; c < filenames.length; c++) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filenames[c]), ",", true);
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < numRows; i++) {
+                columns[c][i] = ts.data.get(i).getValue();
+                points.add(new Point(timestamps[i], columns[c][i]));
+            }
+            errors[c] = ts.range * 0.005 * (c + 1);
+            separateBytes += MixPiece.compress(points, errors[c]).length;
+        }
+
+        byte[] binary = MultiColumn.compress(timestamps, columns, errors);
+        assertTrue(binary.length < separateBytes, binary.length + " >= " + separateBytes);
+        assertEquals(filenames.length, MultiColumn.getNumColumns(binary));
+        assertArrayEquals(timestamps, MultiColumn.decompressTimestamps(binary));
+
+        int[] subset = {2, 0};
+        double[][] values = MultiColumn.decompress(binary, subset);
+        assertEquals(subset.length, values.length);
+        for (int k = 0; k < subset.length; k++) {
+            assertEquals(numRows, values[k].length);
+            for (int i = 0; i < numRows; i++)
+                assertEquals(columns[subset[k]][i], values[k][i], 1.1 * errors[subset[k]], "Value did not match for row " + i);
+        }
+
+        double[][] invalid = {columns[0]};
+        assertThrows(IllegalArgumentException.class, () -> MultiColumn.compress(timestamps, invalid, new double[]{0}));
+        assertThrows(IllegalArgumentException.class, () -> MultiColumn.compress(new long[]{2, 1}, new double[][]{{0, 0}}, new double[]{1}));
+
+        byte[] truncated = Arrays.copyOf(binary, binary.length - 1);
+        IOException e = assertThrows(IOException.class, () -> MultiColumn.decompress(truncated, 0));
+        assertEquals("Expected " + binary.length + " bytes of header and columns but got " + truncated.length, e.getMessage());
+    }
+}
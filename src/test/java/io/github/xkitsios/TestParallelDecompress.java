@@ -0,0 +1,47 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestParallelDecompress {
+    @Test
+    public void TestDecompressInto() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/ETHUSD.csv.gz", "/STOXX50E.csv.gz"};
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            for (double epsilonPct : new double[]{0.0001, 0.005}) {
+                double epsilon = ts.range * epsilonPct;
+
+                byte[] simPiece = SimPiece.compress(ts.data, epsilon);
+                int size = SimPiece.decompressedSize(simPiece);
+                long[] expectedTimestamps = new long[size];
+                double[] expectedValues = new double[size];
+                SimPiece.decompressInto(simPiece, expectedTimestamps, expectedValues);
+                long[] timestamps = new long[size];
+                double[] values = new double[size];
+                assertEquals(size, SimPiece.decompressInto(simPiece, timestamps, values, pool));
+                assertArrayEquals(expectedTimestamps, timestamps);
+                assertArrayEquals(expectedValues, values);
+
+                byte[] mixPiece = MixPiece.compress(ts.data, epsilon);
+                size = MixPiece.decompressedSize(mixPiece);
+                expectedTimestamps = new long[size];
+                expectedValues = new double[size];
+                MixPiece.decompressInto(mixPiece, expectedTimestamps, expectedValues);
+                timestamps = new long[size];
+                values = new double[size];
+                assertEquals(size, MixPiece.decompressInto(mixPiece, timestamps, values, ForkJoinPool.commonPool()));
+                assertArrayEquals(expectedTimestamps, timestamps);
+                assertArrayEquals(expectedValues, values);
+            }
+        }
+        pool.shutdown();
+    }
+}
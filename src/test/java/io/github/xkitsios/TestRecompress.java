@@ -0,0 +1,66 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRecompress {
+    // Within error, plus the rounding of slopes and starting values relative to the magnitude of the values: floats
+    // in the VARIABLE_BYTE layout, doubles in the BIT_PACKED one
+    private void assertWithin(List<Point> expected, List<Point> actual, double error, Encoding encoding) {
+        assertEquals(expected.size(), actual.size());
+        double magnitude = 0;
+        for (Point point : expected) magnitude = Math.max(magnitude, Math.abs(point.getValue()));
+        double slack = (encoding == Encoding.BIT_PACKED ? 1e-12 : 1e-6) * magnitude;
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), error + slack, "Value did not match for timestamp " + expected.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void TestRollups() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/ETHUSD.csv.gz", "/Lightning.csv.gz"};
+        double[] errors = {0.001, 0.01, 0.05};
+        for (Encoding encoding : Encoding.values()) {
+            for (String filename : filenames) {
+                TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+
+                byte[] simPiece = SimPiece.compress(ts.data, ts.range * errors[0], encoding);
+                List<Point> simPieceDecompressed = SimPiece.decompress(simPiece);
+                byte[] mixPiece = MixPiece.compress(ts.data, ts.range * errors[0], encoding);
+                List<Point> mixPieceDecompressed = MixPiece.decompress(mixPiece);
+                for (int level = 1; level < errors.length; level++) {
+                    double epsilon = ts.range * errors[level];
+                    double delta = epsilon - ts.range * errors[level - 1];
+
+                    byte[] simPieceRollup = SimPiece.recompress(simPiece, epsilon);
+                    List<Point> simPieceRollupDecompressed = SimPiece.decompress(simPieceRollup);
+                    assertWithin(ts.data, simPieceRollupDecompressed, epsilon, encoding);
+                    assertWithin(simPieceDecompressed, simPieceRollupDecompressed, delta, encoding);
+                    assertTrue(simPieceRollup.length <= simPiece.length);
+
+                    byte[] mixPieceRollup = MixPiece.recompress(mixPiece, epsilon);
+                    List<Point> mixPieceRollupDecompressed = MixPiece.decompress(mixPieceRollup);
+                    assertWithin(ts.data, mixPieceRollupDecompressed, epsilon, encoding);
+                    assertWithin(mixPieceDecompressed, mixPieceRollupDecompressed, delta, encoding);
+                    assertTrue(mixPieceRollup.length <= mixPiece.length);
+
+                    simPiece = simPieceRollup;
+                    simPieceDecompressed = simPieceRollupDecompressed;
+                    mixPiece = mixPieceRollup;
+                    mixPieceDecompressed = mixPieceRollupDecompressed;
+                }
+
+                byte[] finalSimPiece = simPiece;
+                assertThrows(IllegalArgumentException.class, () -> SimPiece.recompress(finalSimPiece, ts.range * errors[errors.length - 1] * 1.5));
+                byte[] finalMixPiece = mixPiece;
+                assertThrows(IllegalArgumentException.class, () -> MixPiece.recompress(finalMixPiece, ts.range * errors[errors.length - 1] * 1.5));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestSegmentTableCache {
+    private void assertSamePoints(List<Point> expected, List<Point> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+        }
+    }
+
+    @Test
+    public void TestCachedDecompression() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/ETHUSD.csv.gz"};
+        List<byte[]> binaries = new ArrayList<>();
+        List<List<Point>> expected = new ArrayList<>();
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            byte[] binary = MixPiece.compress(ts.data, ts.range * 0.01);
+            binaries.add(binary);
+            expected.add(MixPiece.decompress(binary));
+        }
+
+        SegmentTableCache cache = new SegmentTableCache(64L << 20);
+        for (int round = 0; round < 3; round++)
+            for (int i = 0; i < binaries.size(); i++)
+                assertSamePoints(expected.get(i), cache.decompress(binaries.get(i).clone(), Codec.MIX_PIECE));
+        assertEquals(binaries.size(), cache.getMissCount());
+        assertEquals(2L * binaries.size(), cache.getHitCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(binaries.size(), cache.getEntryCount());
+
+        long[] timestamps = new long[expected.get(0).size()];
+        double[] values = new double[expected.get(0).size()];
+        assertEquals(timestamps.length, cache.decompressInto(binaries.get(0), Codec.MIX_PIECE, timestamps, values));
+        assertEquals(expected.get(0).get(timestamps.length - 1).getValue(), values[timestamps.length - 1]);
+
+        long largest = 0;
+        for (byte[] binary : binaries) {
+            cache.clear();
+            cache.decompressedSize(binary, Codec.MIX_PIECE);
+            largest = Math.max(largest, cache.getSizeInBytes());
+        }
+        SegmentTableCache smallCache = new SegmentTableCache(largest);
+        for (int round = 0; round < 2; round++)
+            for (byte[] binary : binaries) smallCache.decompressedSize(binary, Codec.MIX_PIECE);
+        assertEquals(2L * binaries.size(), smallCache.getMissCount());
+        assertTrue(smallCache.getEvictionCount() > 0);
+        assertTrue(smallCache.getSizeInBytes() <= largest);
+
+        SegmentTableCache sharedCache = new SegmentTableCache(64L << 20);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<Point>>> futures = new ArrayList<>();
+        for (int task = 0; task < 32; task++) {
+            byte[] binary = binaries.get(task % binaries.size());
+            futures.add(executor.submit(() -> sharedCache.decompress(binary, Codec.MIX_PIECE)));
+        }
+        for (int task = 0; task < futures.size(); task++)
+            assertSamePoints(expected.get(task % binaries.size()), futures.get(task).get());
+        executor.shutdown();
+        assertEquals(32, sharedCache.getHitCount() + sharedCache.getMissCount());
+        assertEquals(binaries.size(), sharedCache.getEntryCount());
+    }
+
+    @Test
+    public void TestReusedArray() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/FaceFour.csv.gz"), ",", true);
+        byte[] binary = MixPiece.compress(ts.data, ts.range * 0.01);
+        List<Point> expected = MixPiece.decompress(binary);
+
+        SegmentTableCache cache = new SegmentTableCache(64L << 20);
+        byte[] buffer = binary.clone();
+        assertSamePoints(expected, cache.decompress(buffer, Codec.MIX_PIECE));
+        Arrays.fill(buffer, (byte) 0);
+        assertSamePoints(expected, cache.decompress(binary, Codec.MIX_PIECE));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSimilarity {
+    private static double[] values(List<Point> points, long from, long to) {
+        double[] values = new double[(int) (to - from + 1)];
+        for (Point point : points)
+            if (point.getTimestamp() >= from && point.getTimestamp() <= to) values[(int) (point.getTimestamp() - from)] = point.getValue();
+        return values;
+    }
+
+    private static double dot(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) sum += x[i] * y[i];
+        return sum;
+    }
+
+    private static double distance(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) sum += (x[i] - y[i]) * (x[i] - y[i]);
+        return Math.sqrt(sum);
+    }
+
+    private static double correlation(double[] x, double[] y) {
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i] / x.length;
+            meanY += y[i] / y.length;
+        }
+        double cxy = 0, cxx = 0, cyy = 0;
+        for (int i = 0; i < x.length; i++) {
+            cxy += (x[i] - meanX) * (y[i] - meanY);
+            cxx += (x[i] - meanX) * (x[i] - meanX);
+            cyy += (y[i] - meanY) * (y[i] - meanY);
+        }
+        return cxy / Math.sqrt(cxx * cyy);
+    }
+
+    private static void check(Estimate estimate, double reconstructed, double original) {
+        assertEquals(reconstructed, estimate.getValue(), 1e-9 * Math.max(1, Math.abs(reconstructed)));
+        assertTrue(estimate.getLower() <= original && original <= estimate.getUpper(),
+                original + " outside [" + estimate.getLower() + ", " + estimate.getUpper() + "]");
+    }
+
+    private void check(TimeSeries a, TimeSeries b, byte[] binaryA, Codec codecA, byte[] binaryB, Codec codecB, long from, long to) throws Exception {
+        List<Point> decompressedA = codecA == Codec.SIM_PIECE ? SimPiece.decompress(binaryA) : MixPiece.decompress(binaryA);
+        List<Point> decompressedB = codecB == Codec.SIM_PIECE ? SimPiece.decompress(binaryB) : MixPiece.decompress(binaryB);
+        long start = Math.max(from, Math.max(a.data.get(0).getTimestamp(), b.data.get(0).getTimestamp()));
+        long end = Math.min(to, Math.min(a.data.get(a.data.size() - 1).getTimestamp(), b.data.get(b.data.size() - 1).getTimestamp()));
+        double[] x = values(decompressedA, start, end);
+        double[] y = values(decompressedB, start, end);
+        double[] originalX = values(a.data, start, end);
+        double[] originalY = values(b.data, start, end);
+
+        check(Similarity.dot(binaryA, codecA, binaryB, codecB, from, to), dot(x, y), dot(originalX, originalY));
+        check(Similarity.distance(binaryA, codecA, binaryB, codecB, from, to), distance(x, y), distance(originalX, originalY));
+        check(Similarity.correlation(binaryA, codecA, binaryB, codecB, from, to), correlation(x, y), correlation(originalX, originalY));
+    }
+
+    @Test
+    public void TestSimilarity() throws Exception {
+        TimeSeries a = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/MoteStrain.csv.gz"), ",", true);
+        TimeSeries b = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/FaceFour.csv.gz"), ",", true);
+        for (double epsilonPct : new double[]{0.001, 0.01, 0.05}) {
+            double epsilonA = a.range * epsilonPct;
+            double epsilonB = b.range * epsilonPct;
+            byte[] mixPieceA = MixPiece.compress(a.data, epsilonA);
+            byte[] simPieceB = SimPiece.compress(b.data, epsilonB);
+            byte[] packedA = MixPiece.compress(a.data, epsilonA, Encoding.BIT_PACKED);
+            byte[] packedB = MixPiece.compress(b.data, epsilonB, Encoding.BIT_PACKED);
+
+            check(a, b, mixPieceA, Codec.MIX_PIECE, simPieceB, Codec.SIM_PIECE, Long.MIN_VALUE, Long.MAX_VALUE);
+            check(a, b, packedA, Codec.MIX_PIECE, packedB, Codec.MIX_PIECE, Long.MIN_VALUE, Long.MAX_VALUE);
+            check(a, b, mixPieceA, Codec.MIX_PIECE, packedB, Codec.MIX_PIECE, 1000, 1999);
+            check(a, a, mixPieceA, Codec.MIX_PIECE, packedA, Codec.MIX_PIECE, 500, 700);
+        }
+    }
+
+    @Test
+    public void TestBoundsShrinkWithError() throws Exception {
+        TimeSeries a = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/MoteStrain.csv.gz"), ",", true);
+        double previousWidth = Double.MAX_VALUE;
+        for (double epsilonPct : new double[]{0.05, 0.01, 0.001}) {
+            byte[] binary = MixPiece.compress(a.data, a.range * epsilonPct);
+            Estimate correlation = Similarity.correlation(binary, Codec.MIX_PIECE, binary, Codec.MIX_PIECE);
+            assertEquals(1, correlation.getValue(), 1e-9);
+            assertEquals(1, correlation.getUpper(), 1e-9);
+            assertTrue(correlation.getUpper() - correlation.getLower() < previousWidth);
+            previousWidth = correlation.getUpper() - correlation.getLower();
+        }
+    }
+
+    @Test
+    public void TestNoOverlap() throws Exception {
+        long[] timestamps = {0, 1, 2};
+        long[] shifted = {10, 11, 12};
+        double[] values = {1, 2, 3};
+        byte[] a = SimPiece.compress(timestamps, values, 0.1);
+        byte[] b = SimPiece.compress(shifted, values, 0.1);
+        assertThrows(IllegalArgumentException.class, () -> Similarity.dot(a, Codec.SIM_PIECE, b, Codec.SIM_PIECE));
+        assertEquals(0, Similarity.distance(a, Codec.SIM_PIECE, a, Codec.SIM_PIECE).getValue(), 1e-12);
+        assertTrue(Double.isNaN(Similarity.correlation(a, Codec.SIM_PIECE, a, Codec.SIM_PIECE, 0, 0).getValue()));
+    }
+}
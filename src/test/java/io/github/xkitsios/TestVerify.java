@@ -0,0 +1,69 @@
+package io.github.xkitsios;
+
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestVerify {
+    private void check(List<Point> ts, List<Point> decompressed, ErrorStats stats, double epsilon) {
+        double maxError = 0;
+        double sumError = 0;
+        long numViolations = 0;
+        for (int i = 0; i < ts.size(); i++) {
+            double error = Math.abs(decompressed.get(i).getValue() - ts.get(i).getValue());
+            maxError = Math.max(maxError, error);
+            sumError += error;
+            if (error > epsilon) numViolations++;
+        }
+        assertEquals(ts.size(), stats.getNumPoints());
+        assertEquals(maxError, stats.getMaxError());
+        assertEquals(sumError / ts.size(), stats.getMeanError(), 1e-9 * epsilon);
+        assertEquals(numViolations, stats.getNumViolations());
+        assertTrue(stats.getMaxError() <= 1.1 * epsilon);
+    }
+
+    @Test
+    public void TestVerifyMode() throws Exception {
+        String[] filenames = {"/FaceFour.csv.gz", "/MoteStrain.csv.gz", "/ETHUSD.csv.gz", "/BTCUSD.csv.gz"};
+        for (String filename : filenames) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            for (double epsilonPct : new double[]{0.0005, 0.01}) {
+                double epsilon = ts.range * epsilonPct;
+
+                ErrorStats simPieceStats = new ErrorStats();
+                byte[] simPiece = SimPiece.compress(ts.data, epsilon, simPieceStats);
+                assertArrayEquals(SimPiece.compress(ts.data, epsilon), simPiece);
+                check(ts.data, SimPiece.decompress(simPiece), simPieceStats, epsilon);
+
+                ErrorStats mixPieceStats = new ErrorStats();
+                byte[] mixPiece = MixPiece.compress(ts.data, epsilon, mixPieceStats);
+                assertArrayEquals(MixPiece.compress(ts.data, epsilon), mixPiece);
+                check(ts.data, MixPiece.decompress(mixPiece), mixPieceStats, epsilon);
+
+                ErrorStats failFast = new ErrorStats(mixPieceStats.getMaxError() / 2);
+                ErrorBoundException exception = assertThrows(ErrorBoundException.class, () -> MixPiece.compress(ts.data, epsilon, failFast));
+                assertTrue(exception.getError() > mixPieceStats.getMaxError() / 2);
+                assertTrue(failFast.getNumPoints() < ts.data.size());
+                assertDoesNotThrow(() -> MixPiece.compress(ts.data, epsilon, new ErrorStats(mixPieceStats.getMaxError())));
+            }
+        }
+    }
+
+    @Test
+    public void TestVerifyBlocks() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/MoteStrain.csv.gz"), ",", true);
+        double epsilon = ts.range * 0.01;
+        ErrorStats stats = new ErrorStats();
+        try (BlockWriter writer = new BlockWriter(new ByteArrayOutputStream(), Codec.SIM_PIECE, epsilon, stats)) {
+            for (int start = 0; start < ts.data.size(); start += 10000)
+                writer.write(ts.data.subList(start, Math.min(ts.data.size(), start + 10000)));
+        }
+        assertEquals(ts.data.size(), stats.getNumPoints());
+        assertTrue(stats.getMaxError() <= 1.1 * epsilon);
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.xkitsios.benchmarks;
+
+import io.github.xkitsios.BlockWriter;
+import io.github.xkitsios.Codec;
+import io.github.xkitsios.CodecSelector;
+import io.github.xkitsios.TimeSeriesColumns;
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestCodecSelection {
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int REPETITIONS = 5;
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9 / REPETITIONS;
+    }
+
+    private void run(String name, TimeSeriesColumns columns, double epsilon) throws Exception {
+        long[] timestamps = columns.getTimestamps();
+        double[] values = columns.getValues();
+        double megabytes = columns.size() * 8.0 / (1 << 20);
+
+        for (Codec codec : new Codec[]{Codec.QUANTIZED_DELTA, Codec.SIM_PIECE, Codec.MIX_PIECE}) {
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            BlockWriter.compress(timestamps, values, epsilon, codec, BLOCK_SIZE, outStream);
+            long start = System.nanoTime();
+            for (int k = 0; k < REPETITIONS; k++) {
+                outStream.reset();
+                BlockWriter.compress(timestamps, values, epsilon, codec, BLOCK_SIZE, outStream);
+            }
+            System.out.printf("%s\t%s\tBytes/Point: %.4f\tMB/s: %.1f\n",
+                    name, codec, (double) outStream.size() / columns.size(), megabytes / seconds(start));
+        }
+
+        CodecSelector selector = new CodecSelector();
+        Map<Codec, Integer> choices = new EnumMap<>(Codec.class);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        BlockWriter.compress(timestamps, values, epsilon, selector, BLOCK_SIZE, outStream);
+        long start = System.nanoTime();
+        for (int k = 0; k < REPETITIONS; k++) {
+            choices.clear();
+            for (int from = 0; from < columns.size(); from += BLOCK_SIZE)
+                choices.merge(selector.select(timestamps, values, from, Math.min(columns.size(), from + BLOCK_SIZE), epsilon), 1, Integer::sum);
+        }
+        double selectSeconds = seconds(start);
+
+        start = System.nanoTime();
+        for (int k = 0; k < REPETITIONS; k++) {
+            outStream.reset();
+            BlockWriter.compress(timestamps, values, epsilon, selector, BLOCK_SIZE, outStream);
+        }
+        double adaptiveSeconds = seconds(start);
+        System.out.printf("%s\tADAPTIVE\tBytes/Point: %.4f\tMB/s: %.1f\tSelection: %.1f%% of the time\tBlocks: %s\n",
+                name, (double) outStream.size() / columns.size(), megabytes / adaptiveSeconds, 100 * selectSeconds / adaptiveSeconds, choices);
+        assertTrue(outStream.size() > 0);
+    }
+
+    @Test
+    public void TestSelectionOverhead() throws Exception {
+        for (String filename : new String[]{"/BTCUSD.csv.gz", "/ETHUSD.csv.gz", "/STOXX50E.csv.gz"}) {
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            TimeSeriesColumns columns = TimeSeriesColumns.fromPoints(ts.data);
+            for (double epsilonPct : new double[]{0.0005, 0.01})
+                run(filename.substring(1, filename.indexOf('.')) + " " + epsilonPct * 100 + "%", columns, ts.range * epsilonPct);
+        }
+
+        Random random = new Random(0);
+        long[] timestamps = new long[1 << 20];
+        double[] values = new double[timestamps.length];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = i;
+            values[i] = random.nextGaussian();
+        }
+        run("Noise 0.1%", new TimeSeriesColumns(timestamps, values, -10, 10), 0.01);
+    }
+}
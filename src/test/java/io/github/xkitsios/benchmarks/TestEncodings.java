@@ -0,0 +1,68 @@
+package io.github.xkitsios.benchmarks;
+
+import io.github.xkitsios.Encoding;
+import io.github.xkitsios.MixPiece;
+import io.github.xkitsios.Point;
+import io.github.xkitsios.SimPiece;
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestEncodings {
+    private static final int REPETITIONS = 10;
+
+    private interface Compressor {
+        byte[] compress(List<Point> points, double error, Encoding encoding) throws Exception;
+    }
+
+    private interface Decompressor {
+        int decompressInto(byte[] binary, long[] timestamps, double[] values) throws Exception;
+    }
+
+    private void run(String name, TimeSeries ts, double epsilonPct, Compressor compressor, Decompressor decompressor) throws Exception {
+        double epsilon = ts.range * epsilonPct;
+        int numPoints = ts.data.size();
+        long[] timestamps = new long[numPoints];
+        double[] values = new double[numPoints];
+        for (Encoding encoding : Encoding.values()) {
+            byte[] binary = compressor.compress(ts.data, epsilon, encoding);
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < REPETITIONS; r++) {
+                long start = System.nanoTime();
+                assertEquals(numPoints, decompressor.decompressInto(binary, timestamps, values));
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            for (int i = 0; i < numPoints; i++)
+                assertEquals(ts.data.get(i).getValue(), values[i], 1.1 * epsilon, "Value did not match for timestamp " + timestamps[i]);
+
+            System.out.printf("%s\tEpsilon: %.2f%%\t%s\tBytes/Point: %.4f\tDecode: %.2f ms\tDecode Points/s: %.0f\n",
+                    name, epsilonPct * 100, encoding, (double) binary.length / numPoints, best / 1e6, numPoints / (best / 1e9));
+        }
+    }
+
+    @Test
+    public void TestBytesPerPointAndDecodeSpeed() throws Exception {
+        String[] filenames = {
+                "/FaceFour.csv.gz",
+                "/Lightning.csv.gz",
+                "/MoteStrain.csv.gz",
+                "/BTCUSD.csv.gz",
+                "/ETHUSD.csv.gz",
+                "/STOXX50E.csv.gz"
+        };
+
+        for (String filename : filenames) {
+            System.out.println(filename);
+            TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream(filename), ",", true);
+            for (double epsilonPct : new double[]{0.0005, 0.005, 0.05}) {
+                run("Mix-Piece", ts, epsilonPct, MixPiece::compress, MixPiece::decompressInto);
+                run("Sim-Piece", ts, epsilonPct, SimPiece::compress, SimPiece::decompressInto);
+            }
+            System.out.println();
+        }
+    }
+}
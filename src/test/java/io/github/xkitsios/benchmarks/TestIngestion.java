@@ -0,0 +1,66 @@
+package io.github.xkitsios.benchmarks;
+
+import io.github.xkitsios.IngestionEngine;
+import io.github.xkitsios.Point;
+import io.github.xkitsios.SealedBlob;
+import io.github.xkitsios.util.TimeSeries;
+import io.github.xkitsios.util.TimeSeriesReader;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestIngestion {
+    private static class Counter implements IngestionEngine.Subscriber {
+        private long numBlobs;
+        private long numPoints;
+        private long numBytes;
+
+        @Override
+        public void onSubscribe(IngestionEngine.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(SealedBlob blob) {
+            numBlobs++;
+            numPoints += blob.getNumPoints();
+            numBytes += blob.getBinary().length;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    public void TestThroughput() throws Exception {
+        TimeSeries ts = TimeSeriesReader.getTimeSeries(getClass().getResourceAsStream("/STOXX50E.csv.gz"), ",", true);
+        List<Point> data = ts.data;
+        double[] values = new double[data.size()];
+        for (int i = 0; i < values.length; i++) values[i] = data.get(i).getValue();
+
+        for (int numSeries : new int[]{1_000, 1_000, 100_000}) {
+            int pointsPerSeries = 10_000_000 / numSeries;
+            Counter counter = new Counter();
+            IngestionEngine engine = new IngestionEngine(ts.range * 0.001, 1 << 12, Long.MAX_VALUE, 1 << 10);
+            engine.subscribe(counter);
+
+            long start = System.nanoTime();
+            for (int k = 0; k < pointsPerSeries; k++)
+                for (int s = 0; s < numSeries; s++)
+                    engine.onNext(s * 0x9E3779B97L, k, values[(int) (((long) s * 7919 + k) % values.length)]);
+            engine.close();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            assertEquals((long) numSeries * pointsPerSeries, counter.numPoints);
+            System.out.printf("Series: %d\tPoints: %d\tBlobs: %d\tPoints/s: %.0f\tBytes/Point: %.4f\n",
+                    numSeries, counter.numPoints, counter.numBlobs, counter.numPoints / seconds, (double) counter.numBytes / counter.numPoints);
+        }
+    }
+}